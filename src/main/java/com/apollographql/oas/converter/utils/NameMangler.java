@@ -0,0 +1,111 @@
+package com.apollographql.oas.converter.utils;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Mangles the names and paths of a spec into GraphQL names. These run for every field and
+ * operation generated, so nothing here compiles a pattern per call: the separators are scanned by
+ * hand, with exactly the semantics of the split and matches they replaced.
+ */
+public class NameMangler {
+  private static final Pattern CONNECTOR_PARAMETERS = Pattern.compile("\\{([a-zA-Z0-9]+)\\}");
+
+  public static final String PATH_SEPARATORS = "/";
+  public static final String PARAM_SEPARATORS = "-_.";
+  public static final String OPERATION_SEPARATORS = "-.";
+
+  /* drops the separators, and capitalises the first letter of each part between them */
+  public static String capitaliseParts(final String cleanedPath, final String separators) {
+    final StringBuilder formattedPath = new StringBuilder(cleanedPath.length());
+
+    boolean first = true;
+    for (int i = 0; i < cleanedPath.length(); i++) {
+      final char c = cleanedPath.charAt(i);
+      if (separators.indexOf(c) >= 0) {
+        first = true;
+      }
+      else if (first) {
+        appendUpperCase(formattedPath, c);
+        first = false;
+      }
+      else {
+        formattedPath.append(c);
+      }
+    }
+
+    return formattedPath.toString();
+  }
+
+  /* as String.toUpperCase() on a single char, without allocating for plain ASCII */
+  private static void appendUpperCase(final StringBuilder builder, final char c) {
+    if (c < 128 && c != 'i') {
+      builder.append(c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c);
+    }
+    else {
+      // locale dependent, e.g. the dotted capital I
+      builder.append(String.valueOf(c).toUpperCase());
+    }
+  }
+
+  public static String genParamName(final String param) {
+    return StringUtils.uncapitalize(capitaliseParts(param, PARAM_SEPARATORS));
+  }
+
+  /* the path of a connector, with its parameters bound to the field's arguments */
+  public static String genConnectorPath(final String path) {
+    return CONNECTOR_PARAMETERS.matcher(path).replaceAll("{\\$args.$1}");
+  }
+
+  public static String sanitiseField(final String name) {
+    final String fieldName = name.startsWith("@") ? name.substring(1) : name;
+
+    return genParamName(fieldName);
+  }
+
+  public static String sanitiseFieldForSelect(final String name) {
+    final String fieldName = name.startsWith("@") ? name.substring(1) : name;
+
+    final String sanitised = genParamName(fieldName);
+
+    if (sanitised.equals(fieldName)) {
+      return sanitised;
+    }
+    else {
+      final boolean needsQuotes = needsQuotes(fieldName);
+      final StringBuilder builder = new StringBuilder();
+      builder.append(sanitised)
+        .append(": ");
+
+      if (needsQuotes) {
+        builder.append('"');
+      }
+
+      builder.append(fieldName);
+
+      if (needsQuotes) {
+        builder.append('"');
+      }
+
+      return builder.toString();
+    }
+  }
+
+  /* as matches(".*[_\\-\\.].*"): a separator, and no line terminator the dots would not match */
+  private static boolean needsQuotes(final String fieldName) {
+    boolean separator = false;
+    for (int i = 0; i < fieldName.length(); i++) {
+      final char c = fieldName.charAt(i);
+      switch (c) {
+        case '_', '-', '.' -> separator = true;
+        case '\n', '\r', '\u0085', '\u2028', '\u2029' -> {
+          return false;
+        }
+        default -> {
+        }
+      }
+    }
+    return separator;
+  }
+}
@@ -7,41 +7,31 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.regex.Pattern;
 
 @Deprecated
 public class NameUtils {
+  /* compiled once: these run for every operation generated */
+  private static final Pattern PATH_PARAMETERS = Pattern.compile("\\{[^}]*}");
+
   public static String formatPath(String path) {
     if (path == null || path.isEmpty()) {
       return path; // Return as-is if null or empty
     }
 
     // Step 1: Remove parameters enclosed in `{}`.
-    String cleanedPath = path.replaceAll("\\{[^}]*}", "");
+    String cleanedPath = PATH_PARAMETERS.matcher(path).replaceAll("");
 
     // Step 2: Split the path into parts and capitalize each part.
-    return capitaliseParts(cleanedPath, "/");
+    return capitaliseParts(cleanedPath, NameMangler.PATH_SEPARATORS);
   }
 
-  private static String capitaliseParts(final String cleanedPath, final String splitChar) {
-    String[] parts = cleanedPath.split(splitChar);
-    StringBuilder formattedPath = new StringBuilder();
-
-    for (String part : parts) {
-      if (!part.isEmpty()) {
-        // Capitalize the first letter of each part
-        formattedPath //.append("/")
-          .append(part.substring(0, 1).toUpperCase())
-          .append(part.substring(1));
-      }
-    }
-
-    // Step 3: Ensure the final string starts with a single slash.
-    return formattedPath.toString();
+  private static String capitaliseParts(final String cleanedPath, final String separators) {
+    return NameMangler.capitaliseParts(cleanedPath, separators);
   }
 
-
   public static String genParamName(final String param) {
-    return StringUtils.uncapitalize(capitaliseParts(param, "[-_\\.]"));
+    return NameMangler.genParamName(param);
   }
 
 //  public static void main(String[] args) {
@@ -93,7 +83,7 @@ public class NameUtils {
     final List<String> parameters = operation.getParameters() != null ? operation.getParameters().stream()
       .filter(parameter -> parameter.getRequired() != null && parameter.getRequired() && !parameter.getIn().equalsIgnoreCase("header"))
       .map(p -> {
-        final String name = capitaliseParts(p.getName(), "[-.]");
+        final String name = capitaliseParts(p.getName(), NameMangler.OPERATION_SEPARATORS);
         return String.format("By%s", StringUtils.capitalize(name));
       })
       .toList() : Collections.emptyList();
@@ -116,45 +106,19 @@ public class NameUtils {
     }
 
     // Step 1: Remove parameters enclosed in `{}`.
-    String cleanedPath = path.replaceAll("\\{[^}]*}", String.join("", parameters));
-    cleanedPath = capitaliseParts(cleanedPath, "[-.]");
+    String cleanedPath = PATH_PARAMETERS.matcher(path).replaceAll(String.join("", parameters));
+    cleanedPath = capitaliseParts(cleanedPath, NameMangler.OPERATION_SEPARATORS);
 
     // Step 2: Split the path into parts and capitalize each part.
-    return capitaliseParts(cleanedPath, "/");
+    return capitaliseParts(cleanedPath, NameMangler.PATH_SEPARATORS);
   }
 
   public static String sanitiseField(final String name) {
-    final String fieldName = name.startsWith("@") ? name.substring(1) : name;
-
-    return genParamName(fieldName);
+    return NameMangler.sanitiseField(name);
   }
 
   public static String sanitiseFieldForSelect(final String name) {
-    final String fieldName = name.startsWith("@") ? name.substring(1) : name;
-
-    final String sanitised = genParamName(fieldName);
-
-    if (sanitised.equals(fieldName)) {
-      return sanitised;
-    }
-    else {
-      final boolean needsQuotes = fieldName.matches(".*[_\\-\\.].*");
-      final StringBuilder builder = new StringBuilder();
-      builder.append(sanitised)
-        .append(": ");
-
-      if (needsQuotes) {
-        builder.append('"');
-      }
-
-      builder.append(fieldName);
-
-      if (needsQuotes) {
-        builder.append('"');
-      }
-
-      return builder.toString();
-    }
+    return NameMangler.sanitiseFieldForSelect(name);
   }
 
 }
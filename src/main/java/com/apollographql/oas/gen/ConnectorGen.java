@@ -1,7 +1,14 @@
 package com.apollographql.oas.gen;
 
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.context.Explanation;
+import com.apollographql.oas.gen.context.FieldTable;
+import com.apollographql.oas.gen.context.NameTable;
+import com.apollographql.oas.gen.context.Reachability;
 import com.apollographql.oas.gen.context.RefCounter;
+import com.apollographql.oas.gen.context.SelectionTable;
+import com.apollographql.oas.gen.context.StringTable;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.GetOp;
 import com.apollographql.oas.gen.nodes.Type;
@@ -9,30 +16,64 @@ import com.apollographql.oas.gen.prompt.Input;
 import com.apollographql.oas.gen.prompt.Prompt;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.Operation;
-import io.swagger.v3.oas.models.PathItem;
-import io.swagger.v3.oas.models.Paths;
 import io.swagger.v3.oas.models.servers.Server;
 import io.swagger.v3.parser.OpenAPIV3Parser;
 import io.swagger.v3.parser.core.models.ParseOptions;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.*;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.logging.LogManager;
 
+import static com.apollographql.oas.gen.log.Trace.print;
 import static com.apollographql.oas.gen.log.Trace.trace;
 
 public class ConnectorGen {
-  private final OpenAPI parser;
+  private static final String DEFAULT_HOST = "http://localhost:4010";
+
+  /* below this many type (or operation) blocks, they are generated on the calling thread */
+  public static final int PARALLEL_THRESHOLD = 64;
+
+  private OpenAPI parser;
+  private String host;
   private Prompt prompt;
   private Context context;
+
+  /* when generating from a context that already indexes the spec, rather than from the model */
+  private Context base;
+  private Map<String, Operation> operations;
   private Set<Type> collected;
+  private StringTable strings;
+  private FieldTable fields;
+  private NameTable names;
+  private SelectionTable selections;
+  private int recursionDepth = Context.DEFAULT_RECURSION_DEPTH;
+  private boolean scalarsOnly;
+  private int parallelThreshold = PARALLEL_THRESHOLD;
+  private PhaseListener listener = PhaseListener.NONE;
+  private boolean explain;
+  private Explanation explanation;
+  private BlockListener blockListener;
+
+  /* the length of the last schema written, the next one is likely to be the same size */
+  private int lastLength = 4096;
 
   public ConnectorGen(final OpenAPI parser, final Prompt prompt) {
     this.parser = parser;
     this.prompt = prompt;
   }
 
+  /* visits the operations in a fork of the base context, which must index every component they reach */
+  ConnectorGen(final Context base, final Map<String, Operation> operations, final String host, final Prompt prompt) {
+    this.base = base;
+    this.operations = operations;
+    this.host = host;
+    this.prompt = prompt;
+  }
+
   public OpenAPI getParser() {
     return parser;
   }
@@ -45,6 +86,95 @@ public class ConnectorGen {
     this.prompt = prompt;
   }
 
+  public StringTable getStrings() {
+    if (this.strings == null) {
+      this.strings = StringTable.forSpec();
+    }
+    return strings;
+  }
+
+  /* share the string table of a spec between generators */
+  public void setStrings(final StringTable strings) {
+    this.strings = strings;
+  }
+
+  /* share the generated field lines of a spec between generators */
+  public void setFields(final FieldTable fields) {
+    this.fields = fields;
+    if (context != null) context.setFields(fields);
+  }
+
+  /* share the names mangled from a spec between generators */
+  public void setNames(final NameTable names) {
+    this.names = names;
+    if (context != null) context.setNames(names);
+  }
+
+  /* share the selection sets rendered for a spec between generators */
+  public void setSelections(final SelectionTable selections) {
+    this.selections = selections;
+    if (context != null) context.setSelections(selections);
+  }
+
+  public int getRecursionDepth() {
+    return recursionDepth;
+  }
+
+  /* how many times a recursive schema is expanded within itself, see Context#isRecursionCut */
+  public void setRecursionDepth(final int recursionDepth) {
+    this.recursionDepth = recursionDepth;
+    if (context != null) context.setRecursionDepth(recursionDepth);
+  }
+
+  public boolean isScalarsOnly() {
+    return scalarsOnly;
+  }
+
+  /* generate only the scalar fields of each response's type(s), without following any ref */
+  public void setScalarsOnly(final boolean scalarsOnly) {
+    this.scalarsOnly = scalarsOnly;
+    if (context != null) context.setScalarsOnly(scalarsOnly);
+  }
+
+  public int getParallelThreshold() {
+    return parallelThreshold;
+  }
+
+  /* how many blocks it takes to generate them in parallel, Integer.MAX_VALUE never does */
+  public void setParallelThreshold(final int parallelThreshold) {
+    if (parallelThreshold < 1) {
+      throw new IllegalArgumentException("Parallel threshold must be at least 1, not " + parallelThreshold);
+    }
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  public PhaseListener getPhaseListener() {
+    return listener;
+  }
+
+  /* told how long visiting, ref counting and writing took */
+  public void setPhaseListener(final PhaseListener listener) {
+    this.listener = listener != null ? listener : PhaseListener.NONE;
+  }
+
+  public boolean isExplain() {
+    return explain;
+  }
+
+  /* reports what each operation of the next visit() and writeSchema() cost, see #getExplanation */
+  public void setExplain(final boolean explain) {
+    this.explain = explain;
+  }
+
+  public Explanation getExplanation() {
+    return explanation;
+  }
+
+  /* told where each block of the schemas written next starts and ends, see GenerationSession */
+  void setBlockListener(final BlockListener blockListener) {
+    this.blockListener = blockListener;
+  }
+
   /**
    * @deprecated Use only for recording
    */
@@ -75,14 +205,14 @@ public class ConnectorGen {
     final ConnectorGen generator = fromFile(source, prompt);
     generator.visit();
 
-    System.out.println("---------------- recorder ----------------------");
+    print(null, "---------------- recorder ----------------------");
     final List<Pair<String, String>> records = ((Prompt.MapRecorder) recorder).getRecords();
-    records.forEach(pair -> System.out.println(pair.getLeft() + " -> " + pair.getRight()));
+    records.forEach(pair -> print(null, pair.getLeft() + " -> " + pair.getRight()));
 
-    System.out.println("---------------- schema ----------------------");
+    print(null, "---------------- schema ----------------------");
     final StringWriter writer = new StringWriter();
     generator.writeSchema(writer);
-    System.out.println(writer);
+    print(null, writer.toString());
   }
 
   public static ConnectorGen fromFile(final String source, final Prompt prompt) throws IOException {
@@ -106,49 +236,130 @@ public class ConnectorGen {
   }
 
   public void visit() throws IOException {
+    listener.started(PhaseListener.Phase.VISIT);
+    final long start = System.nanoTime();
     final OpenAPI parser = getParser();
 
     final Context context = getContext();
-    final Paths paths = parser.getPaths();
-
-    final List<Map.Entry<String, PathItem>> filtered = paths.entrySet()
-      .stream().filter(entry -> entry.getValue().getGet() != null)
-      .sorted((o1, o2) -> o1.getKey().compareToIgnoreCase(o2.getKey()))
-      .toList();
+    final Map<String, Operation> filtered = getOperations();
 
     final Set<Type> collected = new LinkedHashSet<>();
+    // a base context has indexed them all already
+    final Reachability reachability = parser != null ? new Reachability(parser) : null;
+    this.explanation = explain ? new Explanation() : null;
 
-    for (final Map.Entry<String, PathItem> entry : filtered) {
+    for (final Map.Entry<String, Operation> entry : filtered.entrySet()) {
       if (!context.getPrompt().yesNo("get:" + entry.getKey(), "visit '" + entry.getKey() + "'?")) {
-        trace(context, "   [visitPath]", entry.getKey() + " skipped");
+        trace(context, "   [visitPath]", () -> entry.getKey() + " skipped");
         continue;
       }
 
+      final Explanation.Operation explained = explanation != null
+        ? explanation.begin(entry.getKey(), context.getNodes().size()) : null;
+      context.setExplained(explained);
+
+      // only the components this operation can reach are indexed
+      if (reachability != null) context.index(reachability.of(entry.getValue()));
+
       final Type result = visitPath(context, entry.getKey(), entry.getValue());
       collected.add(result);
+
+      if (explained != null) {
+        context.setExplained(null);
+        explanation.end(explained, result, context.getNodes().size());
+      }
     }
 
     this.collected = collected;
+    listener.completed(PhaseListener.Phase.VISIT, System.nanoTime() - start);
+  }
+
+  /**
+   * Releases the swagger model once {@link #visit()} is done. The graph is completed first (ref
+   * counting visits anything left for later), then every node copies the few fields it still needs
+   * and drops its schema. Only {@link #writeSchema(Writer)} can be used afterwards.
+   */
+  public void detach() {
+    if (collected == null) {
+      throw new IllegalStateException("Nothing to detach, visit() has not been called yet");
+    }
+
+    final Context context = getContext();
+    listener.started(PhaseListener.Phase.REF_COUNT);
+    final long counting = System.nanoTime();
+    new RefCounter(context).addAll(collected);
+    listener.completed(PhaseListener.Phase.REF_COUNT, System.nanoTime() - counting);
+
+    for (final Type type : context.getNodes()) {
+      type.detach(context);
+    }
+
+    if (parser != null) this.host = findHost(parser);
+    context.clearIndex();
+    context.detach();
+    this.parser = null;
+  }
+
+  /* the GET operations of the spec by path, in the order they are visited */
+  private Map<String, Operation> getOperations() {
+    if (operations != null) return operations;
+
+    final Map<String, Operation> operations = new LinkedHashMap<>();
+    parser.getPaths().entrySet()
+      .stream().filter(entry -> entry.getValue().getGet() != null)
+      .sorted((o1, o2) -> o1.getKey().compareToIgnoreCase(o2.getKey()))
+      .forEach(entry -> operations.put(entry.getKey(), entry.getValue().getGet()));
+    return operations;
   }
 
   public Context getContext() {
     if (this.context == null) {
-      this.context = new Context(getParser(), getPrompt());
+      // a fork looks refs up in its base's index, and shares its string table
+      this.context = base != null ? base.fork() : new Context(getParser(), getPrompt(), getStrings());
+      this.context.setPrompt(getPrompt());
+      this.context.setRecursionDepth(recursionDepth);
+      this.context.setScalarsOnly(scalarsOnly);
+      if (fields != null) this.context.setFields(fields);
+      if (names != null) this.context.setNames(names);
+      if (selections != null) this.context.setSelections(selections);
     }
     return this.context;
   }
 
   public void writeSchema(Writer writer) throws IOException {
-    final Set<String> generatedSet = context.getGeneratedSet();
-    generatedSet.clear();
+    if (writer instanceof Emitter emitter) {
+      writeSchema(emitter);
+      return;
+    }
+
+    final Emitter emitter = new Emitter(lastLength);
+    writeSchema(emitter);
+
+    emitter.writeTo(writer);
+    writer.flush();
+  }
+
+  /* encodes the schema as UTF-8 straight into the channel as it is generated, e.g. a FileChannel */
+  public void writeSchema(final WritableByteChannel channel) throws IOException {
+    final Emitter emitter = new Emitter(lastLength, channel);
+    writeSchema(emitter);
+
+    emitter.flush();
+  }
+
+  public void writeSchema(final Emitter writer) throws IOException {
+    listener.started(PhaseListener.Phase.WRITE);
+    final long start = System.nanoTime();
 
     writeDirectives(writer);
 
+    listener.started(PhaseListener.Phase.REF_COUNT);
+    final long counting = System.nanoTime();
     final RefCounter counter = new RefCounter(getContext());
     counter.addAll(collected);
+    listener.completed(PhaseListener.Phase.REF_COUNT, System.nanoTime() - counting);
 
-    final Map<String, Integer> refs = counter.getCount();
-    printRefs(refs);
+    trace(null, "[gen::refs]", () -> refsOf(counter.getCount()));
 
     // we can sort by ref count I guess if we wanted to
 //    final Map<String, Type> types = context.getTypes();
@@ -166,84 +377,126 @@ public class ConnectorGen {
 //    }
 
     // 1. generated collected types
-    for (final Type type : context.getTypes().values()) {
-      if (counter.getCount().containsKey(type.getName())) {
-        type.generate(context, writer);
-        generatedSet.add(type.getName());
-      }
-    }
+    final List<Type> types = context.getTypes().values().stream()
+      .filter(counter::isReferenced)
+      .toList();
+
+    emit(context, writer, types, (branch, out, type) -> type.generate(branch, out));
 
     // 2. now operations
     writeQuery(context, writer, collected);
-    writer.flush();
+    // a streamed schema only leaves its last chunk buffered
+    this.lastLength = Math.max(lastLength, writer.length());
+    listener.completed(PhaseListener.Phase.WRITE, System.nanoTime() - start);
   }
 
-  private void writeQuery(final Context context, final Writer writer, final Set<Type> collected)
+  private void writeQuery(final Context context, final Emitter writer, final Set<Type> collected)
     throws IOException {
 
     writer.write("type Query {\n");
 
-    for (final Type type : collected) {
-      type.generate(context, writer);
-
-      writeConnector(context, writer, type);
-      context.getGeneratedSet().add(type.getName());
-    }
+    emit(context, writer, List.copyOf(collected), (branch, out, type) -> {
+      type.generate(branch, out);
+      writeConnector(branch, out, type);
+    });
 
     writer.write("}\n\n");
   }
 
-  private void writeConnector(final Context context, final Writer writer, final Type type) throws IOException {
+  /* the connector of an operation */
+  private static void writeConnector(final Context context, final Emitter writer, final Type type) throws IOException {
     int indent = 0;
 
     // we can safely cast to GetOp
     GetOp get = (GetOp) type;
 
-    var spacing = " ".repeat(indent + 4);
-    writer.append(spacing).append("@connect(\n");
+    writer.indent(indent + 4).append("@connect(\n");
 
-    var newPath = get.getOriginalPath().replaceAll("\\{([a-zA-Z0-9]+)\\}", "{\\$args.$1}");
-    spacing = " ".repeat(indent + 6);
+    var newPath = context.getNames().genConnectorPath(get.getOriginalPath());
     writer
-      .append(spacing).append("source: \"api\"\n")
-      .append(spacing).append("http: { GET: \"").append(newPath).append("\" }\n")
-      .append(spacing).append("selection: \"\"\"\n");
+      .indent(indent + 6).append("source: \"api\"\n")
+      .indent(indent + 6).append("http: { GET: \"").append(newPath).append("\" }\n")
+      .indent(indent + 6).append("selection: \"\"\"\n");
 
 //      writer.append("#### selection goes here\n");
     if (get.getResultType() != null)
       writeSelection(context, writer, get.getResultType());
 
-    writer.append(spacing).append("\"\"\"\n");
+    writer.indent(indent + 6).append("\"\"\"\n");
+    writer.indent(indent + 4).append(")\n");
+  }
+
+  /* writes the blocks in order, generated in parallel into their own buffers when there are enough of them */
+  private void emit(final Context context, final Emitter writer, final List<Type> types, final Block block)
+    throws IOException {
+
+    // explained blocks are written one after the other, each measured on its own
+    if (types.size() < parallelThreshold || explanation != null) {
+      for (final Type type : types) {
+        final long start = writer.position();
+        if (explanation != null) writeExplained(context, writer, type, block);
+        else block.write(context, writer, type);
+
+        if (blockListener != null) blockListener.written(type, start, writer.position());
+        writer.spill();
+      }
+      return;
+    }
+
+    final Emitter[] blocks = new Emitter[types.size()];
+    final int leaf = Math.max(1, types.size() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+
+    try {
+      ForkJoinPool.commonPool().invoke(new Emission(context, types, block, blocks, 0, types.size(), leaf));
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    for (int i = 0; i < blocks.length; i++) {
+      final long start = writer.position();
+      blocks[i].writeTo(writer);
 
-    spacing = " ".repeat(indent + 4);
-    writer.append(spacing).append(")\n");
+      if (blockListener != null) blockListener.written(types.get(i), start, writer.position());
+      writer.spill();
+    }
   }
 
-  private Type visitPath(final Context context, final String name, final PathItem path) {
-    trace(context, "-> [visitPath]", String.format("[%s] %s", name, path.getGet().getOperationId()));
+  private void writeExplained(final Context context, final Emitter writer, final Type type, final Block block)
+    throws IOException {
 
-    final Type type = visitGet(context, name, path.getGet());
-    trace(context, "<- [visitPath]", "out name: " + name);
+    final long position = writer.position();
+    final long start = System.nanoTime();
+    block.write(context, writer, type);
+
+    explanation.written(type, writer.position() - position, System.nanoTime() - start);
+  }
+
+  private Type visitPath(final Context context, final String name, final Operation get) {
+    trace(context, "-> [visitPath]", () -> String.format("[%s] %s", name, get.getOperationId()));
+
+    final Type type = visitGet(context, name, get);
+    trace(context, "<- [visitPath]", () -> "out name: " + name);
 
     return type;
   }
 
   private Type visitGet(final Context context, final String name, final Operation get) {
-    Type operation = Factory.createGetOperation(name, get);
+    Type operation = Factory.createGetOperation(context, name, get);
     operation.visit(context);
     return operation;
   }
 
-  private void writeSelection(final Context context, final Writer writer, final Type type)
+  private static void writeSelection(final Context context, final Emitter writer, final Type type)
     throws IOException {
     type.select(context, writer);
   }
 
-  private void writeDirectives(Writer writer) throws IOException {
-    final OpenAPI api = getParser();
-    final Optional<Server> server = api.getServers().stream().findFirst();
-    final String host = server.isPresent() ? server.get().getUrl() : "http://localhost:4010";
+  private void writeDirectives(Emitter writer) throws IOException {
+    writeDirectives(writer, parser != null ? findHost(parser) : this.host);
+  }
 
+  private static void writeDirectives(final Emitter writer, final String host) throws IOException {
     writer.append("extend schema\n")
       .append("  @link(url: \"https://specs.apollo.dev/federation/v2.10\", import: [\"@key\"])\n")
       .append("  @link(\n")
@@ -255,9 +508,69 @@ public class ConnectorGen {
       .append("\" })\n\n");
   }
 
-  private static void printRefs(final Map<String, Integer> values) {
-    System.out.println("----------- ref count -------------- ");
+  static String findHost(final OpenAPI api) {
+    final Optional<Server> server = api.getServers().stream().findFirst();
+    return server.isPresent() ? server.get().getUrl() : DEFAULT_HOST;
+  }
+
+  /* how a type, or an operation, is written as a block of the schema */
+  private interface Block {
+    void write(Context context, Emitter writer, Type type) throws IOException;
+  }
+
+  /* where the block of a type, or of an operation, was written: between two positions of the emitter */
+  interface BlockListener {
+    void written(Type type, long start, long end);
+  }
+
+  /* generates a range of blocks, each leaf on its own branch of the context, i.e. its own stack */
+  private static class Emission extends RecursiveAction {
+    private final Context context;
+    private final List<Type> types;
+    private final Block block;
+    private final Emitter[] blocks;
+    private final int from;
+    private final int to;
+    private final int leaf;
+
+    private Emission(final Context context, final List<Type> types, final Block block, final Emitter[] blocks,
+                     final int from, final int to, final int leaf) {
+      this.context = context;
+      this.types = types;
+      this.block = block;
+      this.blocks = blocks;
+      this.from = from;
+      this.to = to;
+      this.leaf = leaf;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > leaf) {
+        final int middle = (from + to) >>> 1;
+        invokeAll(new Emission(context, types, block, blocks, from, middle, leaf),
+          new Emission(context, types, block, blocks, middle, to, leaf));
+        return;
+      }
+
+      final Context branch = context.branch();
+      for (int i = from; i < to; i++) {
+        final Emitter writer = new Emitter();
+        try {
+          block.write(branch, writer, types.get(i));
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        blocks[i] = writer;
+      }
+    }
+  }
+
+  private static String refsOf(final Map<String, Integer> values) {
+    final StringBuilder builder = new StringBuilder("----------- ref count -------------- ");
     values.entrySet()//.stream().filter(e -> e.getKey().startsWith("ref://"))
-      .forEach(e -> System.out.println(e.getKey() + " -> " + e.getValue()));
+      .forEach(e -> builder.append('\n').append(e.getKey()).append(" -> ").append(e.getValue()));
+    return builder.toString();
   }
 }
@@ -0,0 +1,223 @@
+package com.apollographql.oas.gen;
+
+import com.apollographql.oas.gen.cache.OutputCache;
+import com.apollographql.oas.gen.emit.Emitter;
+import com.apollographql.oas.gen.nodes.GetOp;
+import com.apollographql.oas.gen.nodes.Kind;
+import com.apollographql.oas.gen.nodes.Type;
+import com.apollographql.oas.gen.prompt.Input;
+import com.apollographql.oas.gen.prompt.Prompt;
+
+import java.io.IOException;
+import java.util.*;
+
+import static com.apollographql.oas.gen.log.Trace.trace;
+
+/**
+ * Keeps the answers of a spec, and the last schema generated from them, so that a change to a few
+ * answers is diffed against the previous generation: the result tells which blocks of the schema,
+ * one per type and one per operation, changed.
+ * <p>
+ * Each schema is the one {@link WebGenerator#writeSchema} writes for the same answers, generated
+ * the same way: a type shared by several operations is visited once, under the prompts of the
+ * first operation reaching it, so no operation can be visited apart from the ones before it. Only
+ * the blocks' positions are recorded as the schema is written, then compared with the previous
+ * schema's in place. A delta answering none of the prompts asked cannot change the schema, and
+ * generates nothing; a schema generated before with the same answers is served from the output
+ * cache, along with the layout of its blocks when the session still has it.
+ * <p>
+ * Answers are keyed as in {@link Prompt.MapPlayer}, by the path of the node each prompt is about.
+ */
+public class GenerationSession {
+  public static final String TYPE_BLOCK = "type:";
+  public static final String OPERATION_BLOCK = "get:";
+
+  /* the layouts of the last schemas generated, a cached schema without one is generated again */
+  private static final int LAYOUTS = 16;
+
+  private final WebGenerator generator;
+  private final OutputCache cache;
+  private final String specHash;
+  private final Map<String, String> answers = new HashMap<>();
+
+  /* by cache key, in access order */
+  private final Map<String, Layout> layouts = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Layout> eldest) {
+      return size() > LAYOUTS;
+    }
+  };
+
+  /* the last schema generated, and where its blocks are */
+  private String schema;
+  private Layout layout;
+
+  private GenerationSession(final WebGenerator generator, final OutputCache cache, final String specHash) {
+    this.generator = generator;
+    this.cache = cache;
+    this.specHash = specHash;
+  }
+
+  public static GenerationSession of(final WebGenerator generator) throws IOException {
+    return new GenerationSession(generator, null, null);
+  }
+
+  /* a session sharing the schemas it generates with the cache, keyed as the spec's other schemas */
+  public static GenerationSession of(final WebGenerator generator, final OutputCache cache, final String specHash)
+    throws IOException {
+    if (cache != null && specHash == null) {
+      throw new IllegalArgumentException("Cannot cache the schemas of a spec without its hash");
+    }
+    return new GenerationSession(generator, cache, specHash);
+  }
+
+  public synchronized Map<String, String> getAnswers() {
+    return Collections.unmodifiableMap(answers);
+  }
+
+  /* replaces every answer, and generates the whole schema */
+  public synchronized Result generate(final Map<String, String> answers) throws IOException {
+    this.answers.clear();
+    this.answers.putAll(answers);
+
+    return regenerate();
+  }
+
+  /* applies the changed answers (a null answer removes it), and generates again if any of them was asked */
+  public synchronized Result apply(final Map<String, String> delta) throws IOException {
+    for (final Map.Entry<String, String> entry : delta.entrySet()) {
+      if (entry.getValue() == null) answers.remove(entry.getKey());
+      else answers.put(entry.getKey(), entry.getValue());
+    }
+
+    if (schema != null && Collections.disjoint(layout.asked, delta.keySet())) {
+      trace(null, "[session::apply]", () -> "delta of " + delta.size() + " answers asks nothing");
+      return new Result(schema, List.of());
+    }
+
+    return regenerate();
+  }
+
+  private Result regenerate() throws IOException {
+    final String before = this.schema;
+    final Layout previous = this.layout;
+    // until generated again, e.g. should an answer be missing
+    this.schema = null;
+
+    final String key = cache != null ? OutputCache.key(specHash, answers, null) : null;
+
+    final Layout cached = key != null ? layouts.get(key) : null;
+    final OutputCache.Entry entry = cached != null ? cache.get(key) : null;
+
+    final String schema;
+    final Layout layout;
+    if (entry != null) {
+      trace(null, "[session::regenerate]", () -> "served from the cache " + key);
+      schema = entry.getSchema();
+      layout = cached;
+    }
+    else {
+      layout = new Layout();
+      final ConnectorGen gen = generator.createGenerator(Prompt.create(new Recording(Prompt.Factory.mapPlayer(answers), layout.asked)));
+      gen.setBlockListener(layout);
+      gen.visit();
+
+      final Emitter writer = new Emitter();
+      gen.writeSchema(writer);
+      schema = writer.toString();
+
+      if (key != null) {
+        cache.put(key, writer);
+        layouts.put(key, layout);
+      }
+    }
+
+    final List<String> changed = changed(before, previous, schema, layout);
+    trace(null, "[session::regenerate]", () -> changed.size() + " blocks changed");
+
+    this.schema = schema;
+    this.layout = layout;
+
+    return new Result(schema, List.copyOf(changed));
+  }
+
+  /* the blocks added, changed or removed, compared in place */
+  private static List<String> changed(final String before, final Layout previous, final String after, final Layout next) {
+    final List<String> changed = new ArrayList<>();
+    for (final Map.Entry<String, int[]> block : next.blocks.entrySet()) {
+      final int[] was = before != null ? previous.blocks.get(block.getKey()) : null;
+      final int[] is = block.getValue();
+
+      final int length = is[1] - is[0];
+      if (was == null || was[1] - was[0] != length || !after.regionMatches(is[0], before, was[0], length)) {
+        changed.add(block.getKey());
+      }
+    }
+
+    if (before != null) {
+      for (final String id : previous.blocks.keySet()) {
+        if (!next.blocks.containsKey(id)) changed.add(id);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * The schema generated, and the ids of the blocks that changed since the previous one: either
+   * {@code type:<name>} or {@code get:<path>}.
+   */
+  public static class Result {
+    private final String schema;
+    private final List<String> changed;
+
+    private Result(final String schema, final List<String> changed) {
+      this.schema = schema;
+      this.changed = changed;
+    }
+
+    public String getSchema() {
+      return schema;
+    }
+
+    public List<String> getChanged() {
+      return changed;
+    }
+  }
+
+  /* where each block of a schema starts and ends, in the order written, and the prompts asked to generate it */
+  private static class Layout implements ConnectorGen.BlockListener {
+    private final Map<String, int[]> blocks = new LinkedHashMap<>();
+    private final Set<String> asked = new HashSet<>();
+
+    @Override
+    public void written(final Type type, final long start, final long end) {
+      final String id = type.kind() == Kind.GET_OP
+        ? OPERATION_BLOCK + ((GetOp) type).getOriginalPath()
+        : TYPE_BLOCK + type.getName();
+      blocks.put(id, new int[]{(int) start, (int) end});
+    }
+  }
+
+  /* answers through the session's answers, and records which prompts were asked */
+  private static class Recording implements Input {
+    private final Input input;
+    private final Set<String> asked;
+
+    private Recording(final Input input, final Set<String> asked) {
+      this.input = input;
+      this.asked = asked;
+    }
+
+    @Override
+    public boolean yesNo(final String id, final String prompt) {
+      asked.add(id);
+      return input.yesNo(id, prompt);
+    }
+
+    @Override
+    public char yesNoSelect(final String id, final String prompt) {
+      asked.add(id);
+      return input.yesNoSelect(id, prompt);
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package com.apollographql.oas.gen;
 
+import com.apollographql.oas.gen.cache.OutputCache;
+import com.apollographql.oas.gen.emit.Emitter;
+import com.apollographql.oas.gen.log.Trace;
 import com.apollographql.oas.gen.prompt.Prompt;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -7,6 +10,10 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 @Command(name = "generate", mixinStandardHelpOptions = true, version = "generate 0.1",
@@ -37,6 +44,33 @@ Last but not least, if specified, this option overrides '--input-type'.\s
 """)
   File recording;
 
+  @Option(names = {"-d", "--recursion-depth"}, paramLabel = "<depth>",
+    description = "how many times a recursive schema is expanded within itself (default: ${DEFAULT-VALUE})",
+    defaultValue = "1")
+  int recursionDepth;
+
+  @Option(names = {"-s", "--scalars-only"},
+    description = "only generate the scalar fields of each response's type(s), refs are not followed")
+  boolean scalarsOnly;
+
+  @Option(names = {"--cache-dir"}, paramLabel = "<dir>",
+    description = """
+a folder the generated schemas are kept in, by the content of the source, the recording and the options.
+Generating the same schema again writes it from there. Only used with '--recording' or '--input-type skip'.\s
+""")
+  File cacheDir;
+
+  @Option(names = {"-t", "--trace"},
+    description = "trace every node visited, generated and selected to the console, same as -D" + Trace.PROPERTY + "=true")
+  boolean trace;
+
+  @Option(names = {"-p", "--profile"}, paramLabel = "<text|json>", arity = "0..1", fallbackValue = "text",
+    description = """
+report the wall time, CPU time and bytes allocated by each phase (parse, visit, ref count, write) to the
+error output once done, with the nodes created, refs looked up, prompts and cache hits. As a table, or as json.\s
+""")
+  String profile;
+
   @Option(names = {"-h", "--help"}, usageHelp = true, description = "display a help message")
   boolean helpRequested = false;
 
@@ -47,6 +81,26 @@ Last but not least, if specified, this option overrides '--input-type'.\s
     assert !helpRequested;
     assert output != null;
 
+    if (trace) Trace.setEnabled(true);
+
+    final OutputCache cache = cacheDir != null ? new OutputCache(0, 0, cacheDir.toPath()) : null;
+    // keyed before the prompt is loaded, loading a recording consumes it
+    final String key = cache != null ? cacheKey() : null;
+
+    final Profiler profiler = profile != null ? new Profiler() : null;
+    final PhaseListener listener = profiler != null ? profiler : PhaseListener.NONE;
+
+    if (key != null) {
+      final OutputCache.Entry cached = cache.get(key);
+      if (profiler != null) profiler.count("outputCache", cached != null ? "hit" : "miss");
+
+      if (cached != null) {
+        writeOutput(cached);
+        if (profiler != null) profiler.report(profile, System.err);
+        return 0;
+      }
+    }
+
     Prompt prompt;
     if (inputType != null || recording != null) {
       prompt = loadPromptOptions();
@@ -55,53 +109,115 @@ Last but not least, if specified, this option overrides '--input-type'.\s
       prompt = Prompt.create(Prompt.Factory.console());
     }
 
+    listener.started(PhaseListener.Phase.PARSE);
+    final long start = System.nanoTime();
     final ConnectorGen generator = ConnectorGen.fromFile(source.getAbsolutePath(), prompt);
+    listener.completed(PhaseListener.Phase.PARSE, System.nanoTime() - start);
+
+    generator.setPhaseListener(listener);
+    generator.setRecursionDepth(recursionDepth);
+    generator.setScalarsOnly(scalarsOnly);
     generator.visit();
+    generator.detach();
+
+    final Emitter schema = new Emitter();
+    generator.writeSchema(schema);
+    if (key != null) cache.put(key, schema);
 
-    Writer writer;
     if (output != null) {
-      if (output.exists() && !output.delete()) {
-        throw new IOException("Could not overwrite destination file '" + output.getName() + "'");
+      // encoded straight into the file
+      try (FileChannel channel = FileChannel.open(createOutput().toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        schema.writeTo(channel);
       }
-
-      writer = new FileWriter(output);
     }
     else {
-      // write to console
-      writer = new OutputStreamWriter(System.out);
+      // write to console, after what was printed while generating
+      Trace.flush();
+      final BufferedWriter buffer = new BufferedWriter(new OutputStreamWriter(System.out));
+      schema.writeTo(buffer);
+      buffer.close();
     }
 
-    final BufferedWriter buffer = new BufferedWriter(writer);
-    generator.writeSchema(buffer);
-    buffer.close();
+    if (profiler != null) {
+      profiler.collect(generator);
+      // after the schema, which may be on the standard output
+      Trace.flush();
+      profiler.report(profile, System.err);
+    }
 
     return 0;
   }
 
+  /* the answers are only known up front when played from a recording, or when everything is selected */
+  private String cacheKey() throws IOException {
+    final Map<String, String> answers;
+    final String input;
+    if (recording != null) {
+      // the recording is played whatever the input type, see #loadPromptOptions
+      if (!recording.isFile()) return null;
+
+      answers = Map.of("recording", OutputCache.specHash(recording.toPath()));
+      input = "recording";
+    }
+    else if ("skip".equals(inputType)) {
+      answers = Collections.emptyMap();
+      input = inputType;
+    }
+    else {
+      return null;
+    }
+
+    final String options = "input=" + input + ";depth=" + recursionDepth + ";scalars=" + scalarsOnly;
+    return OutputCache.key(OutputCache.specHash(source.toPath()), answers, options);
+  }
+
+  private void writeOutput(final OutputCache.Entry cached) throws IOException {
+    if (output != null) {
+      try (OutputStream stream = new FileOutputStream(createOutput())) {
+        cached.writeTo(stream);
+      }
+    }
+    else {
+      Trace.flush();
+      cached.writeTo(System.out);
+      System.out.flush();
+    }
+  }
+
+  private File createOutput() throws IOException {
+    if (output.exists() && !output.delete()) {
+      throw new IOException("Could not overwrite destination file '" + output.getName() + "'");
+    }
+    return output;
+  }
+
   private Prompt loadPromptOptions() throws IOException {
+    // overrides the input type
+    if (recording != null) {
+      if (!recording.isFile()) {
+        throw new FileNotFoundException("Recording not found: " + recording);
+      }
+
+      final String[] records = Recordings.fromInputStream(new FileInputStream(recording));
+      if (records.length == 0) {
+        throw new IllegalStateException("Recording '" + recording + "' is empty");
+      }
+
+      return Prompt.create(Prompt.Factory.player(records));
+    }
+
     switch (inputType) {
-      case "prompt" -> Prompt.create(Prompt.Factory.console());
-      case "record" -> Prompt.create(Prompt.Factory.recorder());
-      case "skip" -> Prompt.create(Prompt.Factory.yes());
-      default -> {
-        if (recording != null) {
-          if (recording.exists() && !recording.delete()) {
-            throw new IOException("Existing recording found, could not delete it");
-          }
-
-          final FileInputStream stream = new FileInputStream(recording);
-          assert stream != null;
-
-          final String[] recording = Recordings.fromInputStream(stream);
-          assert recording.length > 0;
-
-          return Prompt.create(Prompt.Factory.player(recording));
-        }
-        else
-          throw new IllegalStateException("Input type needs to be either 'prompt' or 'record', not: " + inputType);
+      case "prompt" -> {
+        return Prompt.create(Prompt.Factory.console());
+      }
+      case "record" -> {
+        return Prompt.create(Prompt.Factory.recorder());
+      }
+      case "skip" -> {
+        return Prompt.create(Prompt.Factory.yes());
       }
+      default -> throw new IllegalStateException("Input type needs to be either 'prompt', 'record' or 'skip', not: " + inputType);
     }
-    return null;
   }
 
 }
@@ -0,0 +1,27 @@
+package com.apollographql.oas.gen;
+
+/**
+ * Told how long each phase of generating from a spec took, e.g. to time them. Called on the
+ * thread that ran the phase, once it is done.
+ */
+public interface PhaseListener {
+  PhaseListener NONE = (phase, nanos) -> {};
+
+  enum Phase {
+    /* reading the spec into the swagger model */
+    PARSE,
+    LIST_PATHS,
+    PATH_RESULT,
+    FIND,
+    VISIT,
+    REF_COUNT,
+    /* writing the schema, ref counting included */
+    WRITE
+  }
+
+  /* before the phase runs, e.g. to measure more than its duration */
+  default void started(Phase phase) {
+  }
+
+  void completed(Phase phase, long nanos);
+}
@@ -0,0 +1,175 @@
+package com.apollographql.oas.gen;
+
+import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.nodes.Type;
+import io.swagger.v3.core.util.Json;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Measures each phase of a generation, for {@code --profile}: its wall time, the CPU time and the
+ * bytes allocated meanwhile. Both are measured for the whole process, every thread included, so
+ * that blocks written in parallel (and the collector, and the compiler) are accounted for.
+ * <p>
+ * Once done, {@link #collect(ConnectorGen)} adds what the generator counted: the nodes created by
+ * class, refs looked up, questions asked and the hits of each of its tables. A spec spending its
+ * time in parse is then told apart from one that spends it in visit.
+ */
+public class Profiler implements PhaseListener {
+  private static final String[] UNITS = {"B", "KB", "MB", "GB"};
+
+  private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+  private final com.sun.management.OperatingSystemMXBean system = operatingSystem();
+
+  /* what was measured when each phase started, in case phases nest (ref counting in write) */
+  private final Map<Phase, long[]> started = new EnumMap<>(Phase.class);
+  private final Map<Phase, Measure> phases = new EnumMap<>(Phase.class);
+  private final Map<String, Object> counts = new LinkedHashMap<>();
+
+  @Override
+  public void started(final Phase phase) {
+    started.put(phase, new long[]{cpuTime(), allocatedBytes()});
+  }
+
+  @Override
+  public void completed(final Phase phase, final long nanos) {
+    final long[] start = started.remove(phase);
+    final Measure measure = phases.computeIfAbsent(phase, p -> new Measure());
+
+    measure.calls++;
+    measure.wall += nanos;
+    if (start != null) {
+      measure.cpu += cpuTime() - start[0];
+      measure.allocated += allocatedBytes() - start[1];
+    }
+  }
+
+  public void count(final String name, final Object value) {
+    counts.put(name, value);
+  }
+
+  public void collect(final ConnectorGen generator) {
+    final Context context = generator.getContext();
+
+    final Map<String, Integer> nodes = new TreeMap<>();
+    for (final Type type : context.getNodes()) {
+      nodes.merge(type.getClass().getSimpleName(), 1, Integer::sum);
+    }
+
+    count("nodes", context.getNodes().size());
+    count("nodesByClass", nodes);
+    count("lookupRef", context.getLookups());
+    count("prompts", generator.getPrompt().getCalls());
+    final Map<String, Long> strings = stats("lookups", context.getStrings().getLookups(), "hits", context.getStrings().getHits());
+    strings.put("bytesSaved", context.getStrings().getBytesSaved());
+    count("strings", strings);
+    count("names", stats("lookups", context.getNames().getLookups(), "hits", context.getNames().getHits()));
+    count("fields", stats("hits", context.getFields().getHits(), "misses", context.getFields().getMisses()));
+    count("selections", stats("hits", context.getSelections().getHits(), "misses", context.getSelections().getMisses()));
+  }
+
+  public Map<Phase, Measure> getPhases() {
+    return Collections.unmodifiableMap(phases);
+  }
+
+  public Map<String, Object> getCounts() {
+    return Collections.unmodifiableMap(counts);
+  }
+
+  /* as a table, or as JSON with "json" */
+  public void report(final String format, final PrintStream out) {
+    if ("json".equalsIgnoreCase(format)) {
+      final Map<String, Object> report = new LinkedHashMap<>();
+      final Map<String, Object> measured = new LinkedHashMap<>();
+      phases.forEach((phase, measure) -> measured.put(phase.name().toLowerCase(), measure.toMap()));
+
+      report.put("phases", measured);
+      report.put("counts", counts);
+      out.println(Json.pretty(report));
+      return;
+    }
+
+    out.println("---------------- profile ----------------------");
+    out.printf("%-12s %6s %12s %12s %12s%n", "phase", "calls", "wall ms", "cpu ms", "allocated");
+    phases.forEach((phase, measure) -> out.printf("%-12s %6d %12.1f %12.1f %12s%n",
+      phase.name().toLowerCase(), measure.calls, measure.wall / 1e6, measure.cpu / 1e6, bytes(measure.allocated)));
+
+    out.println();
+    counts.forEach((name, value) -> out.println(name + ": " + value));
+  }
+
+  private long cpuTime() {
+    if (system != null) return system.getProcessCpuTime();
+    return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+  }
+
+  /* by the threads alive, the common pool's included */
+  private long allocatedBytes() {
+    if (!(threads instanceof com.sun.management.ThreadMXBean allocating) || !allocating.isThreadAllocatedMemoryEnabled()) {
+      return 0;
+    }
+
+    long total = 0;
+    for (final long bytes : allocating.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      if (bytes > 0) total += bytes;
+    }
+    return total;
+  }
+
+  private static com.sun.management.OperatingSystemMXBean operatingSystem() {
+    return ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean system
+      ? system : null;
+  }
+
+  private static Map<String, Long> stats(final String name, final long value, final String other, final long otherValue) {
+    final Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put(name, value);
+    stats.put(other, otherValue);
+    return stats;
+  }
+
+  private static String bytes(final long bytes) {
+    double value = bytes;
+    int unit = 0;
+    while (value >= 1024 && unit < UNITS.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return String.format("%.1f %s", value, UNITS[unit]);
+  }
+
+  public static class Measure {
+    private int calls;
+    private long wall;
+    private long cpu;
+    private long allocated;
+
+    public int getCalls() {
+      return calls;
+    }
+
+    public long getWallNanos() {
+      return wall;
+    }
+
+    public long getCpuNanos() {
+      return cpu;
+    }
+
+    public long getAllocatedBytes() {
+      return allocated;
+    }
+
+    private Map<String, Object> toMap() {
+      final Map<String, Object> map = new LinkedHashMap<>();
+      map.put("calls", calls);
+      map.put("wallMs", wall / 1e6);
+      map.put("cpuMs", cpu / 1e6);
+      map.put("allocatedBytes", allocated);
+      return map;
+    }
+  }
+}
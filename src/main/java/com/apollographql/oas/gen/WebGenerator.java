@@ -1,38 +1,136 @@
 package com.apollographql.oas.gen;
 
+import com.apollographql.oas.gen.context.ComponentCache;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.context.Explanation;
+import com.apollographql.oas.gen.context.FieldTable;
+import com.apollographql.oas.gen.context.NameTable;
+import com.apollographql.oas.gen.context.Reachability;
 import com.apollographql.oas.gen.context.RefCounter;
+import com.apollographql.oas.gen.context.SelectionTable;
+import com.apollographql.oas.gen.context.StringTable;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.GetOp;
 import com.apollographql.oas.gen.nodes.Type;
 import com.apollographql.oas.gen.prompt.Prompt;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.Operation;
-import io.swagger.v3.oas.models.PathItem;
-import io.swagger.v3.oas.models.Paths;
 import io.swagger.v3.parser.OpenAPIV3Parser;
 import io.swagger.v3.parser.core.models.ParseOptions;
 
 import java.io.*;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
+/**
+ * Holds the graph of a spec for the web API. Visited operations are frozen before they are
+ * published, so any number of request threads can read them without locking; only visiting a path
+ * or a node for the first time (and detaching) synchronizes on the generator. Selections are not
+ * kept here: each call to {@link #writeSchema(Writer, Prompt)} replays its own answers.
+ * <p>
+ * Each operation is built in its own fork of the context and only softly reachable from here, so
+ * the collector can reclaim the subtrees of operations that are not in use. They are rebuilt from
+ * the spec the next time they are asked for.
+ * <p>
+ * The context indexes every component the GET operations can reach the first time it is needed;
+ * a generator read from a file then drops the swagger model, and expands operations and writes
+ * schemas from that index alone.
+ */
 public class WebGenerator {
-  private final OpenAPI parser;
+  /* the heap held per node once expanded, its strings included, as measured on the test specs */
+  private static final int NODE_BYTES = 768;
+  /* per selection set rendered, a few lines of fields */
+  private static final int SELECTION_BYTES = 256;
+
+  private OpenAPI parser;
+  private String source;
   private Prompt prompt;
   private Context context;
-  private final Set<Type> collected = new LinkedHashSet<>();
+
+  /* the GET operations by path, and the server, kept from the model once indexed */
+  private Map<String, Operation> operations;
+  private String host;
+  private final Map<String, Expansion> collected = new ConcurrentHashMap<>();
+  private final ReferenceQueue<Expanded> cleared = new ReferenceQueue<>();
+  private final Set<String> built = ConcurrentHashMap.newKeySet();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder rebuilds = new LongAdder();
+  private final StringTable strings = StringTable.forSpec();
+  private final FieldTable fields = new FieldTable();
+  private final NameTable names = new NameTable();
+  private final SelectionTable selections = new SelectionTable();
+  private ComponentCache componentCache = ComponentCache.shared();
+  private volatile List<String> paths;
+  private PhaseListener listener = PhaseListener.NONE;
 
   public WebGenerator(final OpenAPI parser, final Prompt prompt) {
     this.parser = parser;
     this.prompt = prompt;
   }
 
-  public OpenAPI getParser() {
+  /* re-reads the spec from its source when it has been detached */
+  public synchronized OpenAPI getParser() {
+    if (parser == null && source != null) {
+      listener.started(PhaseListener.Phase.PARSE);
+      final long start = System.nanoTime();
+      this.parser = read(source);
+      listener.completed(PhaseListener.Phase.PARSE, System.nanoTime() - start);
+      if (parser == null) throw new IllegalStateException("Could not re-read OpenAPI source file " + source);
+
+      if (context != null) context.attach(parser);
+    }
     return parser;
   }
 
+  /* whether the swagger model is held, it is not once a generator read from a file is indexed */
+  public synchronized boolean isAttached() {
+    return parser != null;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Releases the swagger model, once every component the GET operations can reach is indexed.
+   * Visited nodes have already dropped their schemas when they were frozen, and operations are
+   * expanded and generated from the index, so the model is only re-read should the generator be
+   * evicted and used again.
+   */
+  public synchronized void detach() {
+    if (source == null) {
+      throw new IllegalStateException("Cannot detach a generator that was not read from a file");
+    }
+
+    getContext().detach();
+    this.parser = null;
+  }
+
+  /**
+   * Drops the graph built so far and releases the component definitions this spec shares with
+   * others, so that the last spec using a definition frees it. The spec is re-read if used again.
+   */
+  public synchronized void evict() {
+    if (context != null) {
+      context.clearIndex();
+      this.context = null;
+    }
+
+    collected.clear();
+    built.clear();
+    this.operations = null;
+    if (source != null) {
+      this.parser = null;
+    }
+  }
+
   public Prompt getPrompt() {
     return prompt;
   }
@@ -41,92 +139,316 @@ public class WebGenerator {
     this.prompt = prompt;
   }
 
-  public static WebGenerator fromFile(final String source, final Prompt prompt) throws IOException {
-    final ParseOptions options = new ParseOptions();
-    options.setResolve(true); // implicit
-    options.setResolveCombinators(false); // default is true
+  public PhaseListener getPhaseListener() {
+    return listener;
+  }
 
+  /* told how long each phase took, re-reading the spec included, and passed on to each generation */
+  public void setPhaseListener(final PhaseListener listener) {
+    this.listener = listener != null ? listener : PhaseListener.NONE;
+  }
+
+  public static WebGenerator fromFile(final String source, final Prompt prompt) throws IOException {
     if (!new File(source).exists()) {
       throw new FileNotFoundException("Source not found: " + source);
     }
 
-    final OpenAPI parser = new OpenAPIV3Parser().read(source, null, options);
+    final OpenAPI parser = read(source);
 
     if (parser == null) throw new IOException("Could not create OpenAPI parser for source file");
 
-    return new WebGenerator(parser, prompt);
+    final WebGenerator generator = new WebGenerator(parser, prompt);
+    generator.source = source;
+    return generator;
+  }
+
+  private static OpenAPI read(final String source) {
+    final ParseOptions options = new ParseOptions();
+    options.setResolve(true); // implicit
+    options.setResolveCombinators(false); // default is true
+
+    return new OpenAPIV3Parser().read(source, null, options);
   }
 
   public List<String> listGetPaths() throws IOException {
-    final OpenAPI parser = getParser();
+    listener.started(PhaseListener.Phase.LIST_PATHS);
+    final long start = System.nanoTime();
+    if (this.paths == null) {
+      this.paths = List.copyOf(getOperations().keySet());
+    }
 
-    final Context context = getContext();
-    final Paths paths = parser.getPaths();
+    listener.completed(PhaseListener.Phase.LIST_PATHS, System.nanoTime() - start);
+    return this.paths;
+  }
+
+  public StringTable getStrings() {
+    return strings;
+  }
 
-    return paths.entrySet()
-      .stream().filter(entry -> entry.getValue().getGet() != null)
-      .sorted((o1, o2) -> o1.getKey().compareToIgnoreCase(o2.getKey()))
-//      .map(entry -> visitPath(context, entry.getKey(), entry.getValue()))
-      .map(entry -> entry.getKey())
-      .toList();
+  public FieldTable getFields() {
+    return fields;
   }
 
-  public Set<Type> getCollected() {
-    return collected;
+  public NameTable getNames() {
+    return names;
   }
 
-  public Context getContext() {
+  public SelectionTable getSelections() {
+    return selections;
+  }
+
+  public ComponentCache getComponentCache() {
+    return componentCache;
+  }
+
+  /* the cache component definitions are shared through, null to keep them to this spec */
+  public synchronized void setComponentCache(final ComponentCache componentCache) {
+    if (context != null) {
+      throw new IllegalStateException("Cannot change the component cache once the spec has been visited");
+    }
+    this.componentCache = componentCache;
+  }
+
+  /* the operations currently expanded, operations reclaimed by the collector are not included */
+  public Collection<Type> getCollected() {
+    final List<Type> result = new ArrayList<>(collected.size());
+    for (final Expansion expansion : collected.values()) {
+      final Expanded expanded = expansion.get();
+      if (expanded != null) result.add(expanded.operation);
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  /* subtrees reclaimed by the collector so far */
+  public long getEvictions() {
+    drain();
+    return evictions.sum();
+  }
+
+  /* subtrees built again after having been reclaimed */
+  public long getRebuilds() {
+    return rebuilds.sum();
+  }
+
+  /* the context operations are visited in, forked from, indexing everything they can reach */
+  public synchronized Context getContext() {
     if (this.context == null) {
-      this.context = new Context(getParser(), getPrompt());
+      final OpenAPI parser = getParser();
+      final Context context = new Context(parser, getPrompt(), getStrings());
+      context.setComponentCache(getComponentCache());
+      context.setFields(getFields());
+      context.setNames(getNames());
+      context.setSelections(getSelections());
+
+      final Map<String, Operation> operations = new LinkedHashMap<>();
+      final Reachability reachability = new Reachability(parser);
+      parser.getPaths().entrySet()
+        .stream().filter(entry -> entry.getValue().getGet() != null)
+        .sorted((o1, o2) -> o1.getKey().compareToIgnoreCase(o2.getKey()))
+        .forEach(entry -> {
+          operations.put(entry.getKey(), entry.getValue().getGet());
+          context.index(reachability.of(entry.getValue().getGet()));
+        });
+
+      // built while the model is at hand, and kept once detached
+      context.getGraph();
+
+      this.context = context;
+      this.operations = operations;
+      this.host = ConnectorGen.findHost(parser);
+
+      // nothing needs the model anymore, it is re-read should the generator be evicted
+      if (source != null) detach();
     }
     return this.context;
   }
 
-  private Type visitPath(final Context context, final String name, final PathItem path) {
-    trace(context, "-> [visitPath]", String.format("[%s] %s", name, path.getGet().getOperationId()));
+  /* the GET operations of the spec by path, in the order they are generated */
+  synchronized Map<String, Operation> getOperations() {
+    getContext();
+    return operations;
+  }
+
+  synchronized String getHost() {
+    getContext();
+    return host;
+  }
+
+  private Type visitPath(final Context context, final String name, final Operation get) {
+    trace(context, "-> [visitPath]", () -> String.format("[%s] %s", name, get.getOperationId()));
 
-    final Type type = visitGet(context, name, path.getGet());
-    trace(context, "<- [visitPath]", "out name: " + name);
+    final Type type = visitGet(context, name, get);
+    trace(context, "<- [visitPath]", () -> "out name: " + name);
 
     return type;
   }
 
   private Type visitGet(final Context context, final String name, final Operation get) {
-    Type operation = Factory.createGetOperation(name, get);
+    Type operation = Factory.createGetOperation(context, name, get);
     operation.visit(context);
     return operation;
   }
 
   public GetOp getPathResult(final String id) throws IOException {
+    listener.started(PhaseListener.Phase.PATH_RESULT);
+    final long start = System.nanoTime();
+    final GetOp result = expand(id).operation;
+
+    listener.completed(PhaseListener.Phase.PATH_RESULT, System.nanoTime() - start);
+    return result;
+  }
+
+  private Expanded expand(final String id) {
     final String sanitised = id.startsWith("get:") ? id.substring("get:".length()) : id;
-    final Optional<Map.Entry<String, PathItem>> found = getParser().getPaths().entrySet()
-      .stream().filter(entry -> entry.getKey().equals(sanitised))
-      .findFirst();
 
-    if (found.isPresent()) {
-      final GetOp result = (GetOp) visitPath(getContext(), found.get().getKey(), found.get().getValue());
-      collected.add(result);
+    final Expanded cached = lookup(sanitised);
+    if (cached != null) {
+      return cached;
+    }
+
+    synchronized (this) {
+      drain();
+
+      final Expanded existing = lookup(sanitised);
+      if (existing != null) {
+        return existing;
+      }
 
-      return result;
+      final Operation found = getOperations().get(sanitised);
+      if (found == null) {
+        throw new IllegalArgumentException("Path '" + id + "' not found in spec paths");
+      }
+
+      if (!built.add(sanitised)) {
+        rebuilds.increment();
+        trace(null, "[web::expand]", () -> "rebuilding " + sanitised);
+      }
+
+      // the operation's own graph, it goes away with its nodes when the collector reclaims it
+      final Context context = getContext().fork();
+
+      final GetOp result = (GetOp) visitPath(context, sanitised, found);
+      result.freeze(context);
+
+      final Expanded expanded = new Expanded(result, context);
+      collected.put(sanitised, new Expansion(sanitised, expanded, cleared));
+
+      return expanded;
     }
-    else {
-      throw new IllegalArgumentException("Path '" + id + "' not found in spec paths");
+  }
+
+  private Expanded lookup(final String path) {
+    final Expansion expansion = collected.get(path);
+    return expansion != null ? expansion.get() : null;
+  }
+
+  /* as if the collector had reclaimed the operation's subtree, e.g. to test it is rebuilt */
+  void reclaim(final String id) {
+    final Expansion expansion = collected.get(id.startsWith("get:") ? id.substring("get:".length()) : id);
+    if (expansion != null) expansion.enqueue();
+  }
+
+  /* forgets the operations whose subtrees have been reclaimed */
+  private void drain() {
+    Reference<? extends Expanded> reference;
+    while ((reference = cleared.poll()) != null) {
+      final Expansion expansion = (Expansion) reference;
+      collected.remove(expansion.path, expansion);
+      evictions.increment();
     }
   }
 
   public Type find(final String path) {
-    final Type type = Type.findTypeIn(path, this.getCollected());
-    if (type != null && !type.isVisited()) {
-      type.visit(getContext());
+    listener.started(PhaseListener.Phase.FIND);
+    final long start = System.nanoTime();
+    final Type type = findType(path);
+
+    listener.completed(PhaseListener.Phase.FIND, System.nanoTime() - start);
+    return type;
+  }
+
+  private Type findType(final String path) {
+    // paths start with the operation's id, which is expanded again if it has been reclaimed
+    if (!path.startsWith("get:")) return null;
+
+    final int end = path.indexOf('>');
+    final Expanded expanded = expand(end < 0 ? path : path.substring(0, end));
+
+    final Type type = Type.findTypeIn(path, List.of(expanded.operation));
+    if (type == null || type.isFrozen()) {
+      return type;
+    }
+
+    synchronized (this) {
+      final Context context = expanded.context;
+      if (!context.isVisited(type)) {
+        type.visit(context);
+      }
+      type.freeze(context);
     }
 
     return type;
   }
 
+  /* the nodes of the operations currently expanded, i.e. the graph held for the spec */
+  public int getNodeCount() {
+    int count = 0;
+    for (final Expansion expansion : collected.values()) {
+      final Expanded expanded = expansion.get();
+      if (expanded != null) count += expanded.context.getNodes().size();
+    }
+    return count;
+  }
+
+  /* a rough estimate of the heap held for the spec: its nodes, and the selections rendered */
+  public long getEstimatedBytes() {
+    return (long) getNodeCount() * NODE_BYTES + (long) selections.size() * SELECTION_BYTES;
+  }
+
   public void writeSchema(Writer writer, final Prompt prompt) throws IOException {
-    final ConnectorGen gen = new ConnectorGen(getParser(), prompt); // reuse parser
+    final ConnectorGen gen = createGenerator(prompt);
     gen.visit();
     gen.writeSchema(writer);
   }
 
+  /* generates the schema as writeSchema does, reporting what each operation cost instead */
+  public Explanation explain(final Prompt prompt) throws IOException {
+    final ConnectorGen gen = createGenerator(prompt);
+    gen.setExplain(true);
+    gen.visit();
+    gen.writeSchema(new Emitter());
+
+    return gen.getExplanation();
+  }
+
+  /* a generator visiting a fork of the spec's context, i.e. its index and tables, also used by GenerationSession */
+  ConnectorGen createGenerator(final Prompt prompt) {
+    final ConnectorGen gen = new ConnectorGen(getContext(), getOperations(), getHost(), prompt);
+    gen.setStrings(getStrings());
+    gen.setFields(getFields());
+    gen.setNames(getNames());
+    gen.setSelections(getSelections());
+    gen.setPhaseListener(listener);
+    return gen;
+  }
+
+  /* an operation and the context its nodes were created in */
+  private static class Expanded {
+    private final GetOp operation;
+    private final Context context;
+
+    private Expanded(final GetOp operation, final Context context) {
+      this.operation = operation;
+      this.context = context;
+    }
+  }
+
+  private static class Expansion extends SoftReference<Expanded> {
+    private final String path;
+
+    private Expansion(final String path, final Expanded expanded, final ReferenceQueue<Expanded> queue) {
+      super(expanded, queue);
+      this.path = path;
+    }
+  }
 }
@@ -0,0 +1,370 @@
+package com.apollographql.oas.gen.cache;
+
+import com.apollographql.oas.gen.emit.Emitter;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.apollographql.oas.gen.log.Trace.trace;
+import static com.apollographql.oas.gen.log.Trace.warn;
+
+/**
+ * The schemas generated so far, gzipped, keyed by the SHA-256 of the spec's content and a
+ * canonical hash of the answers (and options) they were generated with, see {@link #key}. The
+ * same spec generated again with the same answers is then served from the cache, without
+ * visiting anything.
+ * <p>
+ * Entries are kept in memory in LRU order, up to a number of entries and of compressed bytes.
+ * When a directory is given, entries are also written there, one {@code <key>.sdl.gz} file each:
+ * an entry evicted from memory, or generated by another process, is read back from disk. The
+ * directory is pruned by last use once it holds more than {@link #getMaxDiskBytes()}.
+ */
+public class OutputCache {
+  public static final int DEFAULT_CAPACITY = 64;
+  public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+  private static final String SUFFIX = ".sdl.gz";
+
+  private final int capacity;
+  private final long maxBytes;
+  private final Path directory;
+  private long maxDiskBytes = 8 * DEFAULT_MAX_BYTES;
+
+  /* in access order, guarded by itself */
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder diskHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public OutputCache() {
+    this(DEFAULT_CAPACITY, DEFAULT_MAX_BYTES, null);
+  }
+
+  /* a directory of null keeps entries in memory only */
+  public OutputCache(final int capacity, final long maxBytes, final Path directory) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative, not " + capacity);
+    }
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Max bytes must not be negative, not " + maxBytes);
+    }
+    this.capacity = capacity;
+    this.maxBytes = maxBytes;
+    this.directory = directory;
+  }
+
+  /**
+   * The key of a schema: the spec's hash, then a hash of the answers sorted by id, and of the
+   * options that change what is generated (e.g. the recursion depth). Both are hex, so that a key
+   * is also a file name.
+   */
+  public static String key(final String specHash, final Map<String, String> answers, final String options) {
+    final StringBuilder canonical = new StringBuilder();
+    for (final Map.Entry<String, String> entry : new TreeMap<>(answers).entrySet()) {
+      // length prefixed, no separator can be mistaken for part of an id or answer
+      final String value = String.valueOf(entry.getValue());
+      canonical.append(entry.getKey().length()).append(':').append(entry.getKey())
+        .append(value.length()).append(':').append(value);
+    }
+    canonical.append('#').append(options != null ? options : "");
+
+    return specHash + "-" + DigestUtils.sha256Hex(canonical.toString());
+  }
+
+  public static String specHash(final Path spec) throws IOException {
+    try (InputStream in = Files.newInputStream(spec)) {
+      return DigestUtils.sha256Hex(in);
+    }
+  }
+
+  public static String specHash(final byte[] spec) {
+    return DigestUtils.sha256Hex(spec);
+  }
+
+  /* the entry for the key, from memory or else from disk, null if it was never generated */
+  public Entry get(final String key) {
+    synchronized (entries) {
+      final Entry entry = entries.get(key);
+      if (entry != null) {
+        hits.increment();
+        return entry;
+      }
+    }
+
+    final Entry stored = read(key);
+    if (stored == null) {
+      misses.increment();
+      return null;
+    }
+
+    diskHits.increment();
+    remember(key, stored);
+    return stored;
+  }
+
+  /* compresses the schema and keeps it under the key */
+  public Entry put(final String key, final Emitter schema) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(schema.length() / 4, 64));
+    try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+      schema.writeTo(Channels.newChannel(gzip));
+    }
+
+    return put(key, buffer.toByteArray());
+  }
+
+  /* a copy of a gzipped schema as it is streamed, abandoned once larger than the cache would keep */
+  public Copy copy() {
+    return new Copy(maxBytes);
+  }
+
+  /* keeps the copy under the key, unless it was abandoned: null then */
+  public Entry put(final String key, final Copy copy) {
+    if (copy.isAbandoned()) {
+      trace(null, "[cache::put]", () -> key + " too large, not kept");
+      return null;
+    }
+    return put(key, copy.buffer.toByteArray());
+  }
+
+  /* keeps a schema already gzipped under the key, e.g. as it was streamed */
+  public Entry put(final String key, final byte[] compressed) {
+    final Entry entry = new Entry(compressed);
+    remember(key, entry);
+    write(key, entry);
+
+    trace(null, "[cache::put]", () -> key + " -> " + entry);
+    return entry;
+  }
+
+  public void remove(final String key) {
+    synchronized (entries) {
+      final Entry entry = entries.remove(key);
+      if (entry != null) bytes -= entry.compressed.length;
+    }
+
+    if (directory != null) {
+      try {
+        Files.deleteIfExists(directory.resolve(key + SUFFIX));
+      }
+      catch (IOException e) {
+        warn(null, "[cache::remove]", "could not delete " + key + ": " + e.getMessage());
+      }
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /* compressed bytes held in memory */
+  public long getBytes() {
+    synchronized (entries) {
+      return bytes;
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getDiskHits() {
+    return diskHits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getMaxDiskBytes() {
+    return maxDiskBytes;
+  }
+
+  public void setMaxDiskBytes(final long maxDiskBytes) {
+    if (maxDiskBytes < 0) {
+      throw new IllegalArgumentException("Max disk bytes must not be negative, not " + maxDiskBytes);
+    }
+    this.maxDiskBytes = maxDiskBytes;
+  }
+
+  @Override
+  public String toString() {
+    return "OutputCache {" +
+      "entries=" + size() +
+      ", bytes=" + getBytes() +
+      ", hits=" + getHits() +
+      ", diskHits=" + getDiskHits() +
+      ", misses=" + getMisses() +
+      '}';
+  }
+
+  private void remember(final String key, final Entry entry) {
+    // an entry that doesn't fit at all would only evict the others
+    if (capacity == 0 || entry.compressed.length > maxBytes) return;
+
+    synchronized (entries) {
+      final Entry previous = entries.put(key, entry);
+      if (previous != null) bytes -= previous.compressed.length;
+      bytes += entry.compressed.length;
+
+      final Iterator<Entry> eldest = entries.values().iterator();
+      while (entries.size() > capacity || bytes > maxBytes) {
+        bytes -= eldest.next().compressed.length;
+        eldest.remove();
+      }
+    }
+  }
+
+  private Entry read(final String key) {
+    if (directory == null) return null;
+
+    final Path file = directory.resolve(key + SUFFIX);
+    try {
+      final byte[] compressed = Files.readAllBytes(file);
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+
+      return new Entry(compressed);
+    }
+    catch (NoSuchFileException e) {
+      return null;
+    }
+    catch (IOException e) {
+      warn(null, "[cache::read]", "could not read " + file + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private void write(final String key, final Entry entry) {
+    if (directory == null) return;
+
+    try {
+      Files.createDirectories(directory);
+
+      // written aside then moved, readers never see a partial entry
+      final Path temp = Files.createTempFile(directory, key, ".tmp");
+      Files.write(temp, entry.compressed);
+      Files.move(temp, directory.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+      prune();
+    }
+    catch (IOException e) {
+      warn(null, "[cache::write]", "could not write " + key + ": " + e.getMessage());
+    }
+  }
+
+  /* deletes the least recently used files, until the directory fits */
+  private void prune() throws IOException {
+    final List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files = new ArrayList<>(list.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList());
+    }
+
+    long total = 0;
+    final Map<Path, FileTime> used = new HashMap<>();
+    for (final Path file : files) {
+      total += Files.size(file);
+      used.put(file, Files.getLastModifiedTime(file));
+    }
+
+    files.sort(Comparator.comparing(used::get));
+    for (final Iterator<Path> it = files.iterator(); total > maxDiskBytes && it.hasNext(); ) {
+      final Path file = it.next();
+      total -= Files.size(file);
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Copies what is written into it, up to a number of bytes: past them, the copy is dropped and
+   * nothing more is copied, so that streaming a large schema holds no more than the cache would.
+   */
+  public static class Copy extends OutputStream {
+    private final long limit;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+    private Copy(final long limit) {
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(final int b) {
+      if (reserve(1)) buffer.write(b);
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+      if (reserve(length)) buffer.write(bytes, offset, length);
+    }
+
+    public boolean isAbandoned() {
+      return buffer == null;
+    }
+
+    private boolean reserve(final int length) {
+      if (buffer != null && buffer.size() + (long) length > limit) {
+        this.buffer = null;
+      }
+      return buffer != null;
+    }
+  }
+
+  /**
+   * A gzipped schema: written as is to clients accepting gzip, or inflated while being written.
+   */
+  public static class Entry {
+    private final byte[] compressed;
+
+    private Entry(final byte[] compressed) {
+      this.compressed = compressed;
+    }
+
+    /* the gzip stream, not to be modified */
+    public byte[] getCompressed() {
+      return compressed;
+    }
+
+    public InputStream open() throws IOException {
+      return new GZIPInputStream(new ByteArrayInputStream(compressed));
+    }
+
+    /* inflates the schema into the stream, as UTF-8 */
+    public void writeTo(final OutputStream out) throws IOException {
+      try (InputStream in = open()) {
+        in.transferTo(out);
+      }
+    }
+
+    public String getSchema() throws IOException {
+      try (InputStream in = open()) {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Entry {" +
+        "compressed=" + compressed.length +
+        '}';
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.apollographql.oas.gen.context;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.oas.models.media.Schema;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares component definitions between specs. Two components whose serialised definitions are
+ * identical (e.g. the common TMF schemas embedded in every TMF spec) are resolved to the same
+ * {@link Schema} instance, and only one copy is kept however many specs use it.
+ * <p>
+ * Each context acquires a component once, when it drops its spec's model, and releases it when its
+ * spec is evicted; a definition is dropped when no context holds it anymore. Definitions are
+ * treated as read-only once shared.
+ */
+public class ComponentCache {
+  private static final ComponentCache SHARED = new ComponentCache();
+
+  private final Map<String, Entry> entries = new HashMap<>();
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+
+  public static ComponentCache create() {
+    return new ComponentCache();
+  }
+
+  public static ComponentCache shared() {
+    return SHARED;
+  }
+
+  /* the structural hash of a definition, identical definitions have the same key */
+  public static String keyOf(final Schema<?> schema) {
+    try {
+      return DigestUtils.sha256Hex(Json.mapper().writeValueAsBytes(schema));
+    }
+    catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Could not serialise schema " + schema.getName(), e);
+    }
+  }
+
+  /* the shared instance for the definition with that key, which must be released once */
+  public synchronized Schema<?> acquire(final String key, final Schema<?> schema) {
+    lookups.increment();
+
+    final Entry entry = entries.get(key);
+    if (entry != null) {
+      hits.increment();
+      entry.refs++;
+      return entry.schema;
+    }
+
+    entries.put(key, new Entry(schema));
+    return schema;
+  }
+
+  public synchronized void release(final String key) {
+    final Entry entry = entries.get(key);
+    if (entry == null) {
+      throw new IllegalStateException("Component " + key + " is not held by this cache");
+    }
+
+    if (--entry.refs == 0) {
+      entries.remove(key);
+    }
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized int getRefs(final String key) {
+    final Entry entry = entries.get(key);
+    return entry != null ? entry.refs : 0;
+  }
+
+  public long getLookups() {
+    return lookups.sum();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ComponentCache {" +
+      "size=" + size() +
+      ", lookups=" + getLookups() +
+      ", hits=" + getHits() +
+      '}';
+  }
+
+  private static class Entry {
+    private final Schema<?> schema;
+    private int refs = 1;
+
+    private Entry(final Schema<?> schema) {
+      this.schema = schema;
+    }
+  }
+}
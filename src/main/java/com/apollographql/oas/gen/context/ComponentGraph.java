@@ -0,0 +1,162 @@
+package com.apollographql.oas.gen.context;
+
+import com.apollographql.oas.converter.utils.NameUtils;
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.Schema;
+
+import java.util.*;
+
+/**
+ * The graph of component schemas and the {@code $ref}s between them, analysed once per spec.
+ * A component is recursive when it belongs to a strongly connected component of more than one
+ * schema, or refers to itself: only refs to those can lead back to a type being visited.
+ */
+public class ComponentGraph {
+  private final Map<String, Integer> index = new HashMap<>();
+  private final String[] names;
+  private final int[][] edges;
+
+  /* the strongly connected component of each schema, and whether it is recursive */
+  private final int[] component;
+  private final boolean[] recursive;
+  private int components;
+
+  private ComponentGraph(final Map<String, Schema> schemas) {
+    this.names = schemas.keySet().toArray(new String[0]);
+    for (int i = 0; i < names.length; i++) {
+      index.put(names[i], i);
+    }
+
+    this.edges = new int[names.length][];
+    for (int i = 0; i < names.length; i++) {
+      edges[i] = Reachability.refsOf(schemas.get(names[i])).stream()
+        .map(index::get)
+        .filter(Objects::nonNull)
+        .mapToInt(Integer::intValue)
+        .toArray();
+    }
+
+    this.component = new int[names.length];
+    this.recursive = new boolean[names.length];
+    connect();
+  }
+
+  public static ComponentGraph of(final OpenAPI parser) {
+    final Components components = parser.getComponents();
+    return new ComponentGraph(components != null && components.getSchemas() != null
+      ? components.getSchemas() : Collections.emptyMap());
+  }
+
+  /* the index of a component, from its name or its ref, or -1 when it is not a component */
+  public int indexOf(final String ref) {
+    final Integer found = index.get(NameUtils.getRefName(ref));
+    return found != null ? found : -1;
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  public boolean isRecursive(final String ref) {
+    final int i = indexOf(ref);
+    return i >= 0 && recursive[i];
+  }
+
+  public boolean isRecursive(final int index) {
+    return recursive[index];
+  }
+
+  public int getComponentCount() {
+    return components;
+  }
+
+  public Set<String> getRecursive() {
+    final Set<String> result = new TreeSet<>();
+    for (int i = 0; i < names.length; i++) {
+      if (recursive[i]) result.add(names[i]);
+    }
+    return result;
+  }
+
+  /* Tarjan's algorithm, on an explicit stack since ref chains can be long */
+  private void connect() {
+    final int[] order = new int[names.length];
+    final int[] low = new int[names.length];
+    final boolean[] onStack = new boolean[names.length];
+    Arrays.fill(order, -1);
+
+    final int[] stack = new int[names.length];
+    int top = 0;
+
+    final int[] callStack = new int[names.length];
+    final int[] nextEdge = new int[names.length];
+    int counter = 0;
+
+    for (int root = 0; root < names.length; root++) {
+      if (order[root] >= 0) continue;
+
+      int depth = 0;
+      callStack[depth] = root;
+      nextEdge[root] = 0;
+      order[root] = low[root] = counter++;
+      stack[top++] = root;
+      onStack[root] = true;
+
+      while (depth >= 0) {
+        final int v = callStack[depth];
+
+        if (nextEdge[v] < edges[v].length) {
+          final int w = edges[v][nextEdge[v]++];
+          if (w == v) {
+            recursive[v] = true;
+          }
+
+          if (order[w] < 0) {
+            order[w] = low[w] = counter++;
+            nextEdge[w] = 0;
+            stack[top++] = w;
+            onStack[w] = true;
+            callStack[++depth] = w;
+          }
+          else if (onStack[w]) {
+            low[v] = Math.min(low[v], order[w]);
+          }
+          continue;
+        }
+
+        if (low[v] == order[v]) {
+          int size = 0;
+          int w;
+          do {
+            w = stack[--top];
+            onStack[w] = false;
+            component[w] = components;
+            size++;
+          } while (w != v);
+
+          if (size > 1) {
+            for (int i = top; i < top + size; i++) {
+              recursive[stack[i]] = true;
+            }
+          }
+          components++;
+        }
+
+        if (--depth >= 0) {
+          final int parent = callStack[depth];
+          low[parent] = Math.min(low[parent], low[v]);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ComponentGraph {" +
+      "schemas=" + names.length +
+      ", components=" + components +
+      ", recursive=" + getRecursive().size() +
+      '}';
+  }
+}
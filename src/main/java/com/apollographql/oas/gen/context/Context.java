@@ -1,13 +1,21 @@
 package com.apollographql.oas.gen.context;
 
 import com.apollographql.oas.converter.utils.NameUtils;
+import com.apollographql.oas.gen.jfr.Events;
+import com.apollographql.oas.gen.jfr.LookupRefEvent;
+import com.apollographql.oas.gen.jfr.NodeEvent;
+import com.apollographql.oas.gen.nodes.Kind;
+import com.apollographql.oas.gen.nodes.Ref;
 import com.apollographql.oas.gen.nodes.Type;
+import com.apollographql.oas.gen.nodes.props.PropRef;
 import com.apollographql.oas.gen.prompt.Prompt;
+import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.media.Schema;
 import io.swagger.v3.oas.models.responses.ApiResponse;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.apollographql.oas.gen.log.Trace.warn;
 import static com.apollographql.oas.gen.log.Trace.trace;
@@ -16,20 +24,157 @@ public class Context {
   private static final String COMPONENTS_SCHEMAS = "#/components/schemas/";
   public static final String COMPONENTS_RESPONSES = "#/components/responses/";
 
-  private final OpenAPI parser;
+  /* how many times a recursive component is expanded within itself, 1 expands it once */
+  public static final int DEFAULT_RECURSION_DEPTH = 1;
+
+  private OpenAPI parser;
+
+  /* a fork looks up refs, its index and the component graph through the context it was forked from */
+  private final Context base;
+
+  /* a branch shares the graph of its origin: node ids, visited state, types and names */
+  private final Context origin;
   private final Map<String, Type> types = new TreeMap<>();
 
-  private final Set<String> generatedSet = new LinkedHashSet<>();
+  /* every node created for this context, indexed by its node id */
+  private final List<Type> nodes = new ArrayList<>();
+  private final BitSet visited = new BitSet();
+
+  /* type names, indexed by their symbol */
+  private final Map<String, Integer> symbols = new HashMap<>();
+  private final List<String> names = new ArrayList<>();
+
+  /* the components reachable from the operations indexed so far, see #index(Closure) */
+  private Map<String, Schema<?>> schemas;
+  private Map<String, ApiResponse> responses;
+
+  /* when set, indexed schemas are shared with other specs once detached, and the keys acquired are kept by name */
+  private ComponentCache componentCache;
+  private Map<String, String> keys;
+
+  /* the structural keys computed so far, by schema instance */
+  private final Map<Schema<?>, String> schemaKeys = Collections.synchronizedMap(new IdentityHashMap<>());
 
   private final Stack<Type> stack = new Stack<>();
+
+  /* how many times each node is on the stack, indexed by node id */
+  private int[] entered = new int[64];
+
+  /* the events of the nodes on the stack, indexed by depth, null when not recorded */
+  private NodeEvent[] events = new NodeEvent[16];
+
+  /* how many refs to each recursive component are on the stack, indexed by component */
+  private ComponentGraph graph;
+  private int[] expanding;
+  private int recursionDepth = DEFAULT_RECURSION_DEPTH;
+
+  /* only the scalar fields of the types a response refers to are visited, no ref is followed */
+  private boolean scalarsOnly;
   private Prompt prompt;
+  private final StringTable strings;
+
+  /* the candidate fields and generated lines of each type, shared with forks and other generators of the spec */
+  private FieldTable fields;
+
+  /* the names mangled from the spec, shared like the fields */
+  private NameTable nameTable;
+
+  /* the selection sets rendered for the spec, shared like the fields */
+  private SelectionTable selections;
+
+  /* bumped whenever a node is visited, selection keys computed before are then stale */
+  private int version;
+
+  /* selections cut because their type was already on this context's stack */
+  private int cuts;
+
+  /* refs looked up, counted by the context forks and branches look them up through */
+  private final LongAdder lookups = new LongAdder();
+
+  /* the operation being visited on this context, when explaining the generation */
+  private Explanation.Operation explained;
 
   public Context(final OpenAPI parser, final Prompt prompt) {
+    this(parser, prompt, StringTable.forSpec());
+  }
+
+  public Context(final OpenAPI parser, final Prompt prompt, final StringTable strings) {
+    this.base = null;
+    this.origin = null;
     this.parser = parser;
     this.prompt = prompt;
+    this.strings = strings;
+  }
+
+  private Context(final Context base, final boolean branch) {
+    this.base = base;
+    this.origin = branch ? base : null;
+    this.prompt = base.prompt;
+    this.strings = base.strings;
+    this.recursionDepth = base.recursionDepth;
+    this.scalarsOnly = base.scalarsOnly;
+  }
+
+  /**
+   * A context for a separate graph of nodes, with its own node ids, visited state, types and
+   * stack, that resolves refs through this one. Dropping a fork drops every node it created.
+   */
+  public Context fork() {
+    return new Context(this, false);
+  }
+
+  /**
+   * A context over this one's graph, with only its own stack: several branches can generate the
+   * same visited graph concurrently, as long as nothing is visited or stored meanwhile.
+   */
+  public Context branch() {
+    return new Context(this, true);
+  }
+
+  public StringTable getStrings() {
+    return strings;
+  }
+
+  public FieldTable getFields() {
+    if (fields == null) {
+      fields = base != null ? base.getFields() : new FieldTable();
+    }
+    return fields;
+  }
+
+  public void setFields(final FieldTable fields) {
+    this.fields = fields;
+  }
+
+  public NameTable getNames() {
+    if (nameTable == null) {
+      nameTable = base != null ? base.getNames() : new NameTable();
+    }
+    return nameTable;
+  }
+
+  public void setNames(final NameTable nameTable) {
+    this.nameTable = nameTable;
+  }
+
+  public SelectionTable getSelections() {
+    if (selections == null) {
+      selections = base != null ? base.getSelections() : new SelectionTable();
+    }
+    return selections;
+  }
+
+  public void setSelections(final SelectionTable selections) {
+    this.selections = selections;
+  }
+
+  public int getVersion() {
+    if (origin != null) return origin.getVersion();
+    return version;
   }
 
   public Map<String, Type> getTypes() {
+    if (origin != null) return origin.getTypes();
     return types;
   }
 
@@ -37,19 +182,165 @@ public class Context {
     return stack;
   }
 
-  public Set<String> getGeneratedSet() {
-    return generatedSet;
+  public <T extends Type> T register(final T type) {
+    if (origin != null) return origin.register(type);
+
+    type.setNodeId(nodes.size());
+    nodes.add(type);
+    return type;
+  }
+
+  public List<Type> getNodes() {
+    if (origin != null) return origin.getNodes();
+    return Collections.unmodifiableList(nodes);
+  }
+
+  public boolean isVisited(final Type type) {
+    if (origin != null) return origin.isVisited(type);
+    return visited.get(type.getNodeId());
+  }
+
+  public void setVisited(final Type type) {
+    if (origin != null) {
+      origin.setVisited(type);
+      return;
+    }
+    visited.set(type.getNodeId());
+    version++;
+  }
+
+  public int symbolOf(final String name) {
+    if (origin != null) return origin.symbolOf(name);
+
+    final Integer symbol = symbols.get(name);
+    if (symbol != null) {
+      return symbol;
+    }
+
+    symbols.put(name, names.size());
+    names.add(name);
+    return names.size() - 1;
+  }
+
+  public String nameOf(final int symbol) {
+    if (origin != null) return origin.nameOf(symbol);
+    return names.get(symbol);
   }
 
-  public void enter(final Type type) {
-    if (this.stack.contains((type))) {
+  /* what a node is entered for, recorded as a JFR event, see Events */
+  public enum Activity {VISIT, GENERATE, SELECT}
+
+  public void enter(final Type type, final Activity activity) {
+    final int id = type.getNodeId();
+    if (id >= entered.length) {
+      entered = Arrays.copyOf(entered, Math.max(entered.length * 2, id + 1));
+    }
+
+    if (entered[id]++ > 0) {
       warn(this, "[context]", "Possible recursion? We have entered this type more than once! " + Type.getRootPathFor(type));
     }
+
+    final int component = recursiveComponentOf(type);
+    if (component >= 0) expanding[component]++;
+
+    final int depth = stack.size();
+    if (depth >= events.length) {
+      events = Arrays.copyOf(events, events.length * 2);
+    }
+    events[depth] = activity != null ? Events.begin(activity) : null;
+
     this.stack.push(type);
+    if (explained != null) explained.entered(depth + 1);
   }
 
   public void leave() {
-    this.stack.pop();
+    final Type type = this.stack.pop();
+    entered[type.getNodeId()]--;
+
+    final int depth = stack.size();
+    if (events[depth] != null) {
+      Events.end(events[depth], type, depth + 1);
+      events[depth] = null;
+    }
+
+    final int component = recursiveComponentOf(type);
+    if (component >= 0 && expanding[component] > 0) expanding[component]--;
+  }
+
+  /* a selection depending on the stack was cut, it can't be shared */
+  public void cut() {
+    cuts++;
+  }
+
+  public int getCuts() {
+    return cuts;
+  }
+
+  /* whether the node is on the stack, without scanning it */
+  public boolean isEntered(final Type type) {
+    final int id = type.getNodeId();
+    return id < entered.length && entered[id] > 0;
+  }
+
+  public int getRecursionDepth() {
+    return recursionDepth;
+  }
+
+  public void setRecursionDepth(final int recursionDepth) {
+    if (recursionDepth < 1) {
+      throw new IllegalArgumentException("Recursion depth must be at least 1, not " + recursionDepth);
+    }
+    this.recursionDepth = recursionDepth;
+  }
+
+  public boolean isScalarsOnly() {
+    return scalarsOnly;
+  }
+
+  public void setScalarsOnly(final boolean scalarsOnly) {
+    this.scalarsOnly = scalarsOnly;
+  }
+
+  /* built from the spec the first time it is needed, and kept once detached */
+  public ComponentGraph getGraph() {
+    if (graph == null) {
+      final ComponentGraph found = base != null ? base.getGraph() : parser != null ? ComponentGraph.of(parser) : null;
+      if (found == null) return null;
+
+      this.graph = found;
+      this.expanding = new int[graph.size()];
+      trace(this, "[context::graph]", () -> graph.toString());
+    }
+    return graph;
+  }
+
+  /**
+   * Whether following a ref would expand a recursive component that is already being expanded
+   * {@link #getRecursionDepth()} times. The ref is then left unresolved: its field is generated
+   * with the component's type name, and not selected.
+   */
+  public boolean isRecursionCut(final String ref) {
+    final ComponentGraph graph = getGraph();
+    if (graph == null) return false;
+
+    final int component = graph.indexOf(ref);
+    final boolean cut = component >= 0 && graph.isRecursive(component) && expanding[component] >= recursionDepth;
+
+    if (cut && explained != null) explained.cut(ref);
+    return cut;
+  }
+
+  private int recursiveComponentOf(final Type type) {
+    final String ref = switch (type.kind()) {
+      case REF -> ((Ref) type).getRef();
+      case PROP_REF -> ((PropRef) type).getRef();
+      default -> null;
+    };
+
+    if (ref == null || getGraph() == null) return -1;
+
+    final int component = graph.indexOf(ref);
+    return component >= 0 && graph.isRecursive(component) ? component : -1;
   }
 
   public int size() {
@@ -64,38 +355,192 @@ public class Context {
     this.prompt = prompt;
   }
 
+  /**
+   * Copies the components of a closure from the spec, so that they can still be looked up once the
+   * context is detached. Everything outside the indexed closures is then released with the spec.
+   */
+  public void index(final Reachability.Closure closure) {
+    if (base != null) {
+      base.index(closure);
+      return;
+    }
+
+    if (parser == null) {
+      throw new IllegalStateException("Context has been detached from its spec, cannot index " + closure);
+    }
+
+    if (schemas == null) {
+      this.schemas = new HashMap<>();
+      this.responses = new HashMap<>();
+    }
+
+    final Components components = parser.getComponents();
+    if (components == null) return;
+
+    for (final String name : closure.getSchemas()) {
+      final Schema<?> schema = components.getSchemas() != null ? components.getSchemas().get(name) : null;
+      if (schema != null) schemas.putIfAbsent(name, schema);
+    }
+
+    for (final String name : closure.getResponses()) {
+      final ApiResponse response = components.getResponses() != null ? components.getResponses().get(name) : null;
+      if (response != null) responses.put(name, response);
+    }
+
+    trace(this, "[context::index]", () -> "indexed " + schemas.size() + " schemas, " + responses.size() + " responses");
+  }
+
+  public void clearIndex() {
+    if (keys != null) {
+      keys.values().forEach(componentCache::release);
+      this.keys = null;
+    }
+    schemaKeys.clear();
+
+    this.schemas = null;
+    this.responses = null;
+  }
+
+  public ComponentCache getComponentCache() {
+    return componentCache;
+  }
+
+  /* share the schemas indexed through a cache once detached, released by #clearIndex() */
+  public void setComponentCache(final ComponentCache componentCache) {
+    if (keys != null) {
+      throw new IllegalStateException("Cannot change the component cache once schemas have been shared");
+    }
+    this.componentCache = componentCache;
+  }
+
+  /* the structural key of a schema, see ComponentCache#keyOf, computed once per instance */
+  public String keyOf(final Schema<?> schema) {
+    if (base != null) return base.keyOf(schema);
+
+    final String key = schemaKeys.get(schema);
+    if (key != null) return key;
+
+    final String computed = ComponentCache.keyOf(schema);
+    schemaKeys.put(schema, computed);
+    return computed;
+  }
+
+  /* swaps the indexed schemas for the cache's instances: only worth it once the spec's own copies are dropped */
+  private void share() {
+    if (componentCache == null || schemas == null || keys != null) return;
+
+    this.keys = new HashMap<>();
+    for (final Map.Entry<String, Schema<?>> entry : schemas.entrySet()) {
+      final String key = keyOf(entry.getValue());
+      keys.put(entry.getKey(), key);
+
+      final Schema<?> shared = componentCache.acquire(key, entry.getValue());
+      if (shared != entry.getValue()) {
+        // the spec's own copy is dropped with the model, the memo must not hold it
+        schemaKeys.remove(entry.getValue());
+        schemaKeys.put(shared, key);
+        entry.setValue(shared);
+      }
+    }
+    trace(this, "[context::share]", () -> "shared " + keys.size() + " schemas");
+  }
+
+  /* releases the spec, only indexed components can be looked up until re-attached */
+  public void detach() {
+    this.parser = null;
+    share();
+  }
+
+  public void attach(final OpenAPI parser) {
+    this.parser = parser;
+  }
+
   public Schema<?> lookupRef(final String ref) {
-    if (ref.startsWith(COMPONENTS_SCHEMAS)) {
-      return parser.getComponents().getSchemas().get(NameUtils.getRefName(ref));
+    final LookupRefEvent event = Events.beginLookup();
+    final Schema<?> schema = findRef(ref);
+    if (explained != null) explained.lookedUp(ref);
+
+    if (event != null) Events.end(event, ref, schema != null, stack.size());
+    return schema;
+  }
+
+  private Schema<?> findRef(final String ref) {
+    if (base != null) return base.findRef(ref);
+
+    lookups.increment();
+    if (!ref.startsWith(COMPONENTS_SCHEMAS)) return null;
+
+    final String name = NameUtils.getRefName(ref);
+    if (schemas != null && schemas.containsKey(name)) {
+      return schemas.get(name);
+    }
+
+    if (parser == null) {
+      throw new IllegalStateException("Context has been detached from its spec, cannot lookup " + ref);
     }
 
-    return null;
+    if (schemas != null) warn(this, "[context::lookupRef]", "not in the reachable index: " + ref);
+    return parser.getComponents().getSchemas().get(name);
+  }
+
+  public Explanation.Operation getExplained() {
+    return explained;
+  }
+
+  /* observes the visit of an operation on this context, null once visited */
+  public void setExplained(final Explanation.Operation explained) {
+    this.explained = explained;
+  }
+
+  public long getLookups() {
+    if (base != null) return base.getLookups();
+    return lookups.sum();
   }
 
   public ApiResponse lookupResponse(final String ref) {
-    if (ref.startsWith(COMPONENTS_RESPONSES)) {
-      return parser.getComponents().getResponses().get(NameUtils.getRefName(ref));
+    if (base != null) return base.lookupResponse(ref);
+
+    if (!ref.startsWith(COMPONENTS_RESPONSES)) return null;
+
+    final String name = NameUtils.getRefName(ref);
+    if (responses != null && responses.containsKey(name)) {
+      return responses.get(name);
+    }
+
+    if (parser == null) {
+      throw new IllegalStateException("Context has been detached from its spec, cannot lookup " + ref);
     }
 
-    return null;
+    if (responses != null) warn(this, "[context::lookupResponse]", "not in the reachable index: " + ref);
+    return parser.getComponents().getResponses().get(name);
   }
 
   public void store(final String name, final Type type) {
-    trace(this, "[context::store]", "store " + type.id());
+    if (origin != null) {
+      origin.store(name, type);
+      return;
+    }
+
+    trace(this, "[context::store]", () -> "store " + type.id());
     this.types.put(name, type);
   }
 
   public Type get(final String name) {
+    if (origin != null) return origin.get(name);
+
     if (this.types.containsKey(name)) {
-      trace(this, " [context::inc]", "cached => " + name);
+      trace(this, " [context::inc]", () -> "cached => " + name);
     }
 
     return this.types.get(name);
   }
 
-  public boolean inContextOf(final Class<?> clazz, final Type type) {
-    return getStack().stream()
-      .anyMatch(t -> t != type && t.getClass().isAssignableFrom(clazz));
+  public boolean inContextOf(final Kind kind, final Type type) {
+    for (int i = stack.size() - 1; i >= 0; i--) {
+      final Type t = stack.get(i);
+      if (t != type && t.kind() == kind) return true;
+    }
+    return false;
   }
 
 }
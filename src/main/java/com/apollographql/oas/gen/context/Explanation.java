@@ -0,0 +1,180 @@
+package com.apollographql.oas.gen.context;
+
+import com.apollographql.oas.gen.nodes.Type;
+
+import java.util.*;
+
+/**
+ * What each operation of a generation cost, as measured while visiting and writing it (see
+ * {@link com.apollographql.oas.gen.ConnectorGen#setExplain(boolean)}): the nodes it visited, the components it looked up,
+ * how deep its graph went, where recursion was cut, the time spent and the output written.
+ * <p>
+ * Nodes are only visited once per generation, so an operation is charged for the nodes it was
+ * first to visit, and for the type blocks written for them. Its own block in {@code Query}, the
+ * connector's selection included, is always its own. Blocks of types visited by none of the
+ * operations (e.g. while ref counting) are charged to no one, see {@link #getUnattributed()}.
+ */
+public class Explanation {
+  private final List<Operation> operations = new ArrayList<>();
+
+  /* the operations by the node each visit returned, i.e. their block in Query */
+  private final Map<Type, Operation> byResult = new IdentityHashMap<>();
+  private final Operation unattributed = new Operation(null);
+
+  public Operation begin(final String path, final int nodes) {
+    final Operation operation = new Operation(path);
+    operation.firstNode = nodes;
+    operation.start = System.nanoTime();
+    operations.add(operation);
+    return operation;
+  }
+
+  public void end(final Operation operation, final Type result, final int nodes) {
+    operation.visitNanos = System.nanoTime() - operation.start;
+    operation.lastNode = nodes;
+    byResult.put(result, operation);
+  }
+
+  /* a block written: the operation's own, or a type's, charged to the operation which visited it */
+  public void written(final Type type, final long chars, final long nanos) {
+    Operation operation = byResult.get(type);
+    if (operation == null) operation = ownerOf(type.getNodeId());
+
+    if (operation != null) {
+      operation.output += chars;
+      operation.writeNanos += nanos;
+      if (!byResult.containsKey(type)) operation.types++;
+    }
+    else {
+      unattributed.output += chars;
+      unattributed.writeNanos += nanos;
+      unattributed.types++;
+    }
+  }
+
+  /* most expensive first: by time spent, then by nodes visited */
+  public List<Operation> getOperations() {
+    final List<Operation> sorted = new ArrayList<>(operations);
+    sorted.sort(Comparator.comparingLong(Operation::getNanos)
+      .thenComparingInt(Operation::getNodes)
+      .reversed());
+    return sorted;
+  }
+
+  public Operation getUnattributed() {
+    return unattributed;
+  }
+
+  public List<Map<String, Object>> toList() {
+    final List<Map<String, Object>> list = new ArrayList<>();
+    for (final Operation operation : getOperations()) {
+      list.add(operation.toMap());
+    }
+    return list;
+  }
+
+  private Operation ownerOf(final int node) {
+    // in visit order, i.e. by increasing node ids
+    for (final Operation operation : operations) {
+      if (node >= operation.firstNode && node < operation.lastNode) return operation;
+    }
+    return null;
+  }
+
+  /**
+   * The cost of an operation. Its visit is observed through the context, see
+   * {@link Context#setExplained(Operation)}.
+   */
+  public static class Operation {
+    private final String path;
+    private final Set<String> components = new LinkedHashSet<>();
+    private final Set<String> cuts = new LinkedHashSet<>();
+    private int firstNode;
+    private int lastNode;
+    private int maxDepth;
+    private int types;
+    private long start;
+    private long visitNanos;
+    private long writeNanos;
+    private long output;
+
+    private Operation(final String path) {
+      this.path = path;
+    }
+
+    public void entered(final int depth) {
+      if (depth > maxDepth) maxDepth = depth;
+    }
+
+    public void lookedUp(final String ref) {
+      components.add(ref);
+    }
+
+    public void cut(final String ref) {
+      cuts.add(ref);
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    /* the nodes this operation was first to visit */
+    public int getNodes() {
+      return lastNode - firstNode;
+    }
+
+    public Set<String> getComponents() {
+      return Collections.unmodifiableSet(components);
+    }
+
+    public int getMaxDepth() {
+      return maxDepth;
+    }
+
+    /* the recursive components expanded as far as allowed, i.e. where the graph was cut */
+    public Set<String> getCuts() {
+      return Collections.unmodifiableSet(cuts);
+    }
+
+    /* the type blocks charged to this operation, besides its own */
+    public int getTypes() {
+      return types;
+    }
+
+    public long getVisitNanos() {
+      return visitNanos;
+    }
+
+    public long getWriteNanos() {
+      return writeNanos;
+    }
+
+    public long getNanos() {
+      return visitNanos + writeNanos;
+    }
+
+    /* the chars of the schema written for this operation */
+    public long getOutput() {
+      return output;
+    }
+
+    public Map<String, Object> toMap() {
+      final Map<String, Object> map = new LinkedHashMap<>();
+      map.put("path", path);
+      map.put("nodes", getNodes());
+      map.put("components", components.size());
+      map.put("maxDepth", maxDepth);
+      map.put("cuts", List.copyOf(cuts));
+      map.put("types", types);
+      map.put("visitMs", visitNanos / 1e6);
+      map.put("writeMs", writeNanos / 1e6);
+      map.put("output", output);
+      return map;
+    }
+
+    @Override
+    public String toString() {
+      return "Operation {" + toMap() + '}';
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.apollographql.oas.gen.context;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The candidate fields of each type of a spec, registered when the type is visited, and the SDL
+ * line of each field once it has been generated. A selection of a type is then a bit set over its
+ * candidates, and generating it mostly concatenates lines generated by earlier selections.
+ * <p>
+ * A table is shared by every generator of the same spec (see {@link com.apollographql.oas.gen.WebGenerator}).
+ */
+public class FieldTable {
+  private final Map<String, Fields> types = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /* the fields of a type, shared when the type has been registered with the same candidates before */
+  public Fields register(final String type, final List<String> candidates) {
+    final Fields fields = types.computeIfAbsent(type, k -> new Fields(candidates));
+
+    // another type with the same name, it is not shared
+    return fields.matches(candidates) ? fields : new Fields(candidates);
+  }
+
+  public int size() {
+    return types.size();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "FieldTable {" +
+      "types=" + size() +
+      ", hits=" + getHits() +
+      ", misses=" + getMisses() +
+      '}';
+  }
+
+  public class Fields {
+    private final String[] names;
+    private final Map<String, Integer> index = new HashMap<>();
+    private final AtomicReferenceArray<String> lines;
+
+    private Fields(final List<String> candidates) {
+      this.names = candidates.toArray(new String[0]);
+      this.lines = new AtomicReferenceArray<>(names.length);
+
+      for (int i = 0; i < names.length; i++) {
+        index.putIfAbsent(names[i], i);
+      }
+    }
+
+    /* the bit of a field in a selection mask, or -1 when it is not a candidate */
+    public int indexOf(final String name) {
+      final Integer found = index.get(name);
+      return found != null ? found : -1;
+    }
+
+    public int size() {
+      return names.length;
+    }
+
+    public String getName(final int index) {
+      return names[index];
+    }
+
+    /* the line generated for a field, or null when it has not been generated yet */
+    public String getLine(final int index) {
+      final String line = lines.get(index);
+      if (line != null) hits.increment();
+      else misses.increment();
+
+      return line;
+    }
+
+    public void setLine(final int index, final String line) {
+      lines.set(index, line);
+    }
+
+    private boolean matches(final List<String> candidates) {
+      if (candidates.size() != names.length) return false;
+
+      for (int i = 0; i < names.length; i++) {
+        if (!names[i].equals(candidates.get(i))) return false;
+      }
+      return true;
+    }
+  }
+}
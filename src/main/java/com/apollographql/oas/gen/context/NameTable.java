@@ -0,0 +1,95 @@
+package com.apollographql.oas.gen.context;
+
+import com.apollographql.oas.converter.utils.NameMangler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Remembers the GraphQL names mangled from the names and paths of a spec, so that each field is
+ * sanitised once rather than on every generate and select. Shared by the forks of a context, and
+ * by every generator of the same spec.
+ * <p>
+ * Each memo is bounded: once full, names are still mangled but no longer remembered.
+ */
+public class NameTable {
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private final int capacity;
+
+  private final Map<String, String> fields = new ConcurrentHashMap<>();
+  private final Map<String, String> selections = new ConcurrentHashMap<>();
+  private final Map<String, String> params = new ConcurrentHashMap<>();
+  private final Map<String, String> paths = new ConcurrentHashMap<>();
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public NameTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public NameTable(final int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative, not " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /* see NameMangler#sanitiseField */
+  public String sanitiseField(final String name) {
+    return lookup(fields, name, NameMangler::sanitiseField);
+  }
+
+  /* see NameMangler#sanitiseFieldForSelect */
+  public String sanitiseFieldForSelect(final String name) {
+    return lookup(selections, name, NameMangler::sanitiseFieldForSelect);
+  }
+
+  /* see NameMangler#genParamName */
+  public String genParamName(final String name) {
+    return lookup(params, name, NameMangler::genParamName);
+  }
+
+  /* see NameMangler#genConnectorPath */
+  public String genConnectorPath(final String path) {
+    return lookup(paths, path, NameMangler::genConnectorPath);
+  }
+
+  public int size() {
+    return fields.size() + selections.size() + params.size() + paths.size();
+  }
+
+  public long getLookups() {
+    return lookups.sum();
+  }
+
+  public long getHits() {
+    return lookups.sum() - misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "NameTable {" +
+      "size=" + size() +
+      ", lookups=" + getLookups() +
+      ", hits=" + getHits() +
+      '}';
+  }
+
+  private String lookup(final Map<String, String> memo, final String name, final Function<String, String> mangle) {
+    lookups.increment();
+
+    final String found = memo.get(name);
+    if (found != null) return found;
+
+    misses.increment();
+    final String mangled = mangle.apply(name);
+    if (memo.size() < capacity) {
+      memo.putIfAbsent(name, mangled);
+    }
+    return mangled;
+  }
+}
@@ -0,0 +1,171 @@
+package com.apollographql.oas.gen.context;
+
+import com.apollographql.oas.converter.utils.NameUtils;
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+
+import java.util.*;
+
+/**
+ * Computes the components reachable from an operation by following the raw {@code $ref}s of the
+ * spec, without building any node. Only what {@link com.apollographql.oas.gen.nodes.GetOp} visits
+ * is followed: its non-header parameters and its 200 response.
+ */
+public class Reachability {
+  private static final String COMPONENTS_SCHEMAS = "#/components/schemas/";
+
+  private final Map<String, Schema> schemas;
+  private final Map<String, ApiResponse> responses;
+
+  public Reachability(final OpenAPI parser) {
+    final Components components = parser.getComponents();
+
+    this.schemas = components != null && components.getSchemas() != null
+      ? components.getSchemas() : Collections.emptyMap();
+    this.responses = components != null && components.getResponses() != null
+      ? components.getResponses() : Collections.emptyMap();
+  }
+
+  public Closure of(final Operation get) {
+    final Closure closure = new Closure();
+    final Deque<Schema<?>> pending = new ArrayDeque<>();
+
+    if (get.getParameters() != null) {
+      for (final Parameter parameter : get.getParameters()) {
+        if (parameter.getIn() != null && parameter.getIn().equalsIgnoreCase("header")) continue;
+
+        push(pending, parameter.getSchema());
+        pushContent(pending, parameter.getContent());
+      }
+    }
+
+    final ApiResponse response = get.getResponses() != null ? get.getResponses().get("200") : null;
+    if (response != null) {
+      if (response.get$ref() != null) {
+        final String name = NameUtils.getRefName(response.get$ref());
+        closure.responses.add(name);
+
+        final ApiResponse lookup = responses.get(name);
+        if (lookup != null) pushContent(pending, lookup.getContent());
+      }
+      else {
+        pushContent(pending, response.getContent());
+      }
+    }
+
+    final Deque<String> components = new ArrayDeque<>();
+    for (final String name : refsOf(pending)) {
+      if (closure.schemas.add(name)) components.push(name);
+    }
+
+    while (!components.isEmpty()) {
+      final Schema<?> schema = schemas.get(components.pop());
+      if (schema == null) continue;
+
+      for (final String name : refsOf(schema)) {
+        if (closure.schemas.add(name)) components.push(name);
+      }
+    }
+
+    return closure;
+  }
+
+  /* the components a schema refers to directly, its inline schemas are walked but not its refs */
+  static Set<String> refsOf(final Schema<?> schema) {
+    final Deque<Schema<?>> pending = new ArrayDeque<>();
+    push(pending, schema);
+    return refsOf(pending);
+  }
+
+  private static Set<String> refsOf(final Deque<Schema<?>> pending) {
+    final Set<String> refs = new LinkedHashSet<>();
+
+    // inline schemas are walked once each
+    final Set<Schema<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    while (!pending.isEmpty()) {
+      final Schema<?> schema = pending.pop();
+      if (!seen.add(schema)) continue;
+
+      final String ref = schema.get$ref();
+      if (ref != null) {
+        if (ref.startsWith(COMPONENTS_SCHEMAS)) refs.add(NameUtils.getRefName(ref));
+        continue;
+      }
+
+      if (schema.getProperties() != null) {
+        for (final Schema<?> property : schema.getProperties().values()) {
+          push(pending, property);
+        }
+      }
+
+      push(pending, schema.getItems());
+      push(pending, schema.getNot());
+      pushAll(pending, schema.getAllOf());
+      pushAll(pending, schema.getOneOf());
+      pushAll(pending, schema.getAnyOf());
+
+      if (schema.getAdditionalProperties() instanceof Schema<?> additional) {
+        push(pending, additional);
+      }
+    }
+
+    return refs;
+  }
+
+  private static void push(final Deque<Schema<?>> pending, final Schema<?> schema) {
+    if (schema != null) pending.push(schema);
+  }
+
+  private static void pushAll(final Deque<Schema<?>> pending, final List<Schema> schemas) {
+    if (schemas == null) return;
+
+    for (final Schema<?> schema : schemas) {
+      push(pending, schema);
+    }
+  }
+
+  private static void pushContent(final Deque<Schema<?>> pending, final Content content) {
+    if (content == null) return;
+
+    for (final MediaType mediaType : content.values()) {
+      push(pending, mediaType.getSchema());
+    }
+  }
+
+  /**
+   * The names of the schemas and responses reachable from one or more operations.
+   */
+  public static class Closure {
+    private final Set<String> schemas = new HashSet<>();
+    private final Set<String> responses = new HashSet<>();
+
+    public Set<String> getSchemas() {
+      return Collections.unmodifiableSet(schemas);
+    }
+
+    public Set<String> getResponses() {
+      return Collections.unmodifiableSet(responses);
+    }
+
+    /* the closure of a selection is the union of its operations' closures */
+    public Closure addAll(final Closure other) {
+      schemas.addAll(other.schemas);
+      responses.addAll(other.responses);
+      return this;
+    }
+
+    @Override
+    public String toString() {
+      return "Closure {" +
+        "schemas=" + schemas.size() +
+        ", responses=" + responses.size() +
+        '}';
+    }
+  }
+}
@@ -1,22 +1,22 @@
 package com.apollographql.oas.gen.context;
 
-import com.apollographql.oas.gen.nodes.Scalar;
+import com.apollographql.oas.gen.jfr.Events;
+import com.apollographql.oas.gen.jfr.RefCountEvent;
 import com.apollographql.oas.gen.nodes.Type;
-import com.apollographql.oas.gen.nodes.props.Prop;
 
-import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.*;
 
 public class RefCounter {
   public RefCounter(final Context context) {
-    this.count = new LinkedHashMap<>();
     this.context = context;
   }
 
   private final Context context;
 
-  private final Map<String, Integer> count;
+  /* ref counts indexed by symbol, and the symbols in the order they were first counted */
+  private int[] count = new int[64];
+  private int[] order = new int[64];
+  private int size;
 
   public Context getContext() {
     return context;
@@ -27,29 +27,73 @@ public class RefCounter {
   }
 
   private void inc(Type type) {
-    if (type instanceof Prop || type instanceof Scalar) return;
+    switch (type.kind()) {
+      case PROP_SCALAR, PROP_REF, PROP_ARRAY, PROP_OBJ, SCALAR:
+        return;
+      default:
+        break;
+    }
 
     if (type.getName() == null) return;
 
-    Integer value = count.get(type.getName());
-    if (value != null) {
-      count.put(type.getName(), ++value);
+    final int symbol = type.getSymbol(context);
+    if (symbol >= count.length) {
+      count = Arrays.copyOf(count, Math.max(count.length * 2, symbol + 1));
     }
-    else {
-      count.put(type.getName(), 1);
+
+    if (count[symbol]++ == 0) {
+      if (size == order.length) {
+        order = Arrays.copyOf(order, size * 2);
+      }
+      order[size++] = symbol;
     }
   }
 
+  /* depth-first and in the same order as a recursive walk, so that prompts are asked in the same
+   * order, but on an explicit stack: dependency chains can be deep */
   public void count(final Type type) {
-    add(type);
+    final RefCountEvent event = Events.beginCount();
+    final Deque<Type> pending = new ArrayDeque<>();
+    pending.push(type);
+
+    int walked = 0;
+    Type[] buffer = new Type[8];
+    while (!pending.isEmpty()) {
+      final Type current = pending.pop();
+      add(current);
+      walked++;
 
-    for (final Type child : type.dependencies(getContext())) {
-      count(child);
+      switch (current.kind()) {
+        // these never have dependencies
+        case ENUM, UNION, PROP_SCALAR:
+          continue;
+        default:
+          break;
+      }
+
+      final Set<Type> dependencies = current.dependencies(getContext());
+      buffer = dependencies.toArray(buffer);
+      for (int i = dependencies.size() - 1; i >= 0; i--) {
+        pending.push(buffer[i]);
+      }
     }
+
+    if (event != null) Events.end(event, type, walked, size);
+  }
+
+  public boolean isReferenced(final Type type) {
+    if (type.getName() == null) return false;
+
+    final int symbol = type.getSymbol(context);
+    return symbol < count.length && count[symbol] > 0;
   }
 
   public Map<String, Integer> getCount() {
-    return this.count;
+    final Map<String, Integer> result = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) {
+      result.put(context.nameOf(order[i]), count[order[i]]);
+    }
+    return result;
   }
 
   public void addAll(final Collection<Type> types) {
@@ -0,0 +1,93 @@
+package com.apollographql.oas.gen.context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The selection sets rendered for the types of a spec. A node's selection is identified by a key
+ * interned from its signature, which is built from the keys of the nodes it selects (see
+ * {@link com.apollographql.oas.gen.nodes.Type#getSelectionKey(Context)}): two operations returning
+ * the same type, with the same fields selected, render its selection once for each indentation.
+ * <p>
+ * As keys describe what is selected, a type whose selection changes gets another key, and the
+ * fragments rendered before stay valid for the types still selecting the same fields. Keys and
+ * fragments are bounded: once full, selections are still rendered but no longer remembered.
+ * <p>
+ * A table is shared by the forks of a context, and by every generator of the same spec.
+ */
+public class SelectionTable {
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private final int capacity;
+
+  private final Map<String, Integer> keys = new ConcurrentHashMap<>();
+  private final AtomicInteger nextKey = new AtomicInteger();
+
+  /* by key and indentation, see #slot */
+  private final Map<Long, String> fragments = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public SelectionTable() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public SelectionTable(final int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Capacity must not be negative, not " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /* the key of a signature, or -1 once the table is full */
+  public int intern(final String signature) {
+    final Integer key = keys.get(signature);
+    if (key != null) return key;
+
+    if (keys.size() >= capacity) return -1;
+    return keys.computeIfAbsent(signature, s -> nextKey.getAndIncrement());
+  }
+
+  /* the selection rendered for a key at an indentation, null if not rendered yet */
+  public String get(final int key, final int indent) {
+    final String fragment = fragments.get(slot(key, indent));
+    if (fragment != null) hits.increment();
+    else misses.increment();
+
+    return fragment;
+  }
+
+  public void put(final int key, final int indent, final String fragment) {
+    if (fragments.size() >= capacity) return;
+    fragments.putIfAbsent(slot(key, indent), fragment);
+  }
+
+  public int size() {
+    return fragments.size();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "SelectionTable {" +
+      "keys=" + keys.size() +
+      ", fragments=" + size() +
+      ", hits=" + getHits() +
+      ", misses=" + getMisses() +
+      '}';
+  }
+
+  private static long slot(final int key, final int indent) {
+    return ((long) key << 32) | (indent & 0xffffffffL);
+  }
+}
@@ -0,0 +1,135 @@
+package com.apollographql.oas.gen.context;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Interns the names, refs, descriptions and enum values read from a spec, so that every node
+ * built from the same text shares a single instance.
+ * <p>
+ * A table is normally scoped to a spec (see {@link #create()}), and released with it. The
+ * {@link #shared()} table is process-wide, and holds its entries weakly so that strings no
+ * longer used by any spec can be collected.
+ */
+public class StringTable {
+  public static final String SHARED_PROPERTY = "oas.gen.shared-strings";
+
+  private static final StringTable SHARED = new StringTable(
+    Collections.synchronizedMap(new WeakHashMap<>()), true);
+
+  private final Map<String, Object> table;
+  private final boolean weak;
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder bytesSaved = new LongAdder();
+
+  private StringTable(final Map<String, Object> table, final boolean weak) {
+    this.table = table;
+    this.weak = weak;
+  }
+
+  public static StringTable create() {
+    return new StringTable(new ConcurrentHashMap<>(), false);
+  }
+
+  public static StringTable shared() {
+    return SHARED;
+  }
+
+  /* the process-wide table when enabled with -Doas.gen.shared-strings=true, a new one otherwise */
+  public static StringTable forSpec() {
+    return Boolean.getBoolean(SHARED_PROPERTY) ? shared() : create();
+  }
+
+  public String intern(final String value) {
+    if (value == null) return null;
+
+    lookups.increment();
+
+    final String existing = lookup(value);
+    if (existing != null) {
+      if (existing != value) {
+        hits.increment();
+        bytesSaved.add(sizeOf(existing));
+      }
+      return existing;
+    }
+
+    return weak ? internWeak(value) : internStrong(value);
+  }
+
+  public List<String> internAll(final List<?> values) {
+    if (values == null) return null;
+
+    final List<String> result = new ArrayList<>(values.size());
+    for (final Object value : values) {
+      result.add(value instanceof String ? intern((String) value) : (value == null ? null : String.valueOf(value)));
+    }
+
+    return result;
+  }
+
+  public int size() {
+    return table.size();
+  }
+
+  public long getLookups() {
+    return lookups.sum();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /* an estimate of the bytes no longer allocated for duplicated strings */
+  public long getBytesSaved() {
+    return bytesSaved.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "StringTable {" +
+      "size=" + size() +
+      ", lookups=" + getLookups() +
+      ", hits=" + getHits() +
+      ", bytesSaved=" + getBytesSaved() +
+      '}';
+  }
+
+  private String lookup(final String value) {
+    final Object entry = table.get(value);
+    if (entry instanceof WeakReference<?> ref) {
+      return (String) ref.get();
+    }
+
+    return (String) entry;
+  }
+
+  private String internStrong(final String value) {
+    final Object previous = table.putIfAbsent(value, value);
+    return previous != null ? (String) previous : value;
+  }
+
+  private String internWeak(final String value) {
+    synchronized (table) {
+      final String existing = lookup(value);
+      if (existing != null) return existing;
+
+      table.put(value, new WeakReference<>(value));
+      return value;
+    }
+  }
+
+  /* String header + byte[] header + contents, assuming compact (latin-1) strings where possible */
+  private static long sizeOf(final String value) {
+    boolean latin1 = true;
+    for (int i = 0; i < value.length() && latin1; i++) {
+      latin1 = value.charAt(i) < 256;
+    }
+
+    return 24 + 16 + (long) value.length() * (latin1 ? 1 : 2);
+  }
+}
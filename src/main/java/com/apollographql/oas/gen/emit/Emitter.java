@@ -0,0 +1,245 @@
+package com.apollographql.oas.gen.emit;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The writer the SDL and the selections are generated into: an unsynchronised, growable char
+ * buffer, where the indentation of selections is filled in place. An emitter is used by one thread
+ * at a time, blocks generated in parallel each get their own.
+ * <p>
+ * The result is either copied into another writer, or encoded as UTF-8 straight into a channel
+ * through a pooled byte buffer, without building an intermediate string. An emitter can also be
+ * given a sink: it is then drained into it as it goes, see {@link #spill()}.
+ */
+public final class Emitter extends Writer {
+  private static final int DEFAULT_CAPACITY = 256;
+
+  /* how much is buffered before spilling into the sink */
+  private static final int CHUNK = 8 * 1024;
+
+  /* direct buffers for encoding, a few are kept for the next emitters */
+  private static final int BYTES_CAPACITY = 64 * 1024;
+  private static final BlockingQueue<ByteBuffer> BYTES = new ArrayBlockingQueue<>(8);
+
+  private char[] buffer;
+  private int size;
+
+  /* chars already drained into the sink */
+  private long drained;
+
+  private final WritableByteChannel sink;
+
+  public Emitter() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public Emitter(final int capacity) {
+    this(capacity, null);
+  }
+
+  /* drained into the sink when spilled or flushed, null to keep everything buffered */
+  public Emitter(final int capacity, final WritableByteChannel sink) {
+    this.buffer = new char[Math.max(capacity, 16)];
+    this.sink = sink;
+  }
+
+  /* that many spaces, filled in place rather than appended from a string */
+  public Emitter indent(final int count) {
+    if (count <= 0) return this;
+
+    ensure(count);
+    Arrays.fill(buffer, size, size + count, ' ');
+    size += count;
+    return this;
+  }
+
+  @Override
+  public Emitter append(final CharSequence csq) {
+    if (csq == null) {
+      write("null", 0, 4);
+    }
+    else if (csq instanceof String string) {
+      write(string, 0, string.length());
+    }
+    else {
+      append(csq, 0, csq.length());
+    }
+    return this;
+  }
+
+  @Override
+  public Emitter append(final CharSequence csq, final int start, final int end) {
+    if (csq == null) return append("null".subSequence(start, end));
+
+    ensure(end - start);
+    for (int i = start; i < end; i++) {
+      buffer[size++] = csq.charAt(i);
+    }
+    return this;
+  }
+
+  @Override
+  public Emitter append(final char c) {
+    ensure(1);
+    buffer[size++] = c;
+    return this;
+  }
+
+  @Override
+  public void write(final int c) {
+    append((char) c);
+  }
+
+  @Override
+  public void write(final char[] chars, final int offset, final int length) {
+    ensure(length);
+    System.arraycopy(chars, offset, buffer, size, length);
+    size += length;
+  }
+
+  @Override
+  public void write(final String string) {
+    write(string, 0, string.length());
+  }
+
+  @Override
+  public void write(final String string, final int offset, final int length) {
+    ensure(length);
+    string.getChars(offset, offset + length, buffer, size);
+    size += length;
+  }
+
+  /* the number of chars buffered, i.e. not yet drained into the sink */
+  public int length() {
+    return size;
+  }
+
+  /* the number of chars written so far, drained or not */
+  public long position() {
+    return drained + size;
+  }
+
+  /* what was written since the given length */
+  public String substring(final int start) {
+    return new String(buffer, start, size - start);
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /* empties the buffer, keeping its capacity */
+  public void reset() {
+    size = 0;
+    drained = 0;
+  }
+
+  public void writeTo(final Writer writer) throws IOException {
+    if (writer instanceof Emitter emitter) {
+      emitter.write(buffer, 0, size);
+    }
+    else {
+      writer.write(buffer, 0, size);
+    }
+  }
+
+  /* encodes the buffer as UTF-8 into the channel, returns the number of bytes written */
+  public long writeTo(final WritableByteChannel channel) throws IOException {
+    final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    final CharBuffer chars = CharBuffer.wrap(buffer, 0, size);
+    final ByteBuffer bytes = acquire();
+
+    long written = 0;
+    try {
+      CoderResult result;
+      do {
+        result = encoder.encode(chars, bytes, true);
+        if (result.isError()) result.throwException();
+        written += drain(bytes, channel);
+      } while (result.isOverflow());
+
+      do {
+        result = encoder.flush(bytes);
+        written += drain(bytes, channel);
+      } while (result.isOverflow());
+    }
+    finally {
+      release(bytes);
+    }
+
+    return written;
+  }
+
+  /**
+   * Drains the buffer into the sink once it holds at least a chunk. Only called between blocks,
+   * where nothing written before is read back: offsets taken before a spill are no longer valid.
+   */
+  public void spill() throws IOException {
+    if (sink != null && size >= CHUNK) {
+      flush();
+    }
+  }
+
+  /* drains the buffer into the sink, if any, otherwise the buffer is the destination */
+  @Override
+  public void flush() throws IOException {
+    if (sink == null || size == 0) return;
+
+    writeTo(sink);
+    drained += size;
+    size = 0;
+  }
+
+  @Override
+  public void close() {
+    // nothing to release
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, 0, size);
+  }
+
+  private void ensure(final int count) {
+    final int required = size + count;
+    if (required > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, required));
+    }
+  }
+
+  private static int drain(final ByteBuffer bytes, final WritableByteChannel channel) throws IOException {
+    bytes.flip();
+
+    int written = 0;
+    while (bytes.hasRemaining()) {
+      written += channel.write(bytes);
+    }
+
+    bytes.clear();
+    return written;
+  }
+
+  private static ByteBuffer acquire() {
+    final ByteBuffer bytes = BYTES.poll();
+    return bytes != null ? bytes : ByteBuffer.allocateDirect(BYTES_CAPACITY);
+  }
+
+  private static void release(final ByteBuffer bytes) {
+    bytes.clear();
+    BYTES.offer(bytes);
+  }
+}
@@ -2,6 +2,7 @@ package com.apollographql.oas.gen.factory;
 
 import com.apollographql.oas.converter.utils.GqlUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.context.StringTable;
 import com.apollographql.oas.gen.nodes.*;
 import com.apollographql.oas.gen.nodes.params.Param;
 import com.apollographql.oas.gen.nodes.props.*;
@@ -14,27 +15,30 @@ import java.util.List;
 
 @SuppressWarnings({"ALL", "unchecked"})
 public class Factory {
-  public static GetOp createGetOperation(String name, Operation get) {
-    final GetOp result = new GetOp(name, get);
+  public static GetOp createGetOperation(final Context context, String name, Operation get) {
+    final GetOp result = context.register(new GetOp(name, get));
     result.setOriginalPath(name);
     result.setSummary(get.getSummary());
 
     return result;
   }
 
-  public static Type fromSchema(final Type parent, final Schema schema) {
+  public static Type fromSchema(final Context context, final Type parent, final Schema schema) {
+    final StringTable strings = context.getStrings();
+
     Type result = null;
     if (schema.get$ref() != null) {
-      result = new Ref(parent, schema.get$ref(), schema.get$ref());
+      final String ref = strings.intern(schema.get$ref());
+      result = new Ref(parent, ref, ref);
     }
     else if (schema instanceof ArraySchema) {
       result = new Array(parent, schema.getItems());
     }
     else if (schema instanceof ObjectSchema) {
-      result = new Obj(parent, schema.getName(), schema);
+      result = new Obj(parent, strings.intern(schema.getName()), schema);
     }
     else if (schema instanceof ComposedSchema) {
-      result = new Composed(parent, schema.getName(), schema);
+      result = new Composed(parent, strings.intern(schema.getName()), schema);
     }
     else {
       final String type = schema.getType();
@@ -43,7 +47,7 @@ public class Factory {
           throw new IllegalArgumentException("Should have been handled already? " + type + ", schema: " + schema);
         }
         else if (schema.getEnum() != null) {
-          result = new En(parent, schema, schema.getEnum());
+          result = new En(parent, schema, strings.internAll(schema.getEnum()));
         }
         else if (GqlUtils.gqlScalar(type) != null) { // scalar includes object => JSON
           result = new Scalar(parent, schema);
@@ -58,6 +62,7 @@ public class Factory {
     }
 
     if (result != null) {
+      context.register(result);
       parent.add(result);
     }
     else {
@@ -67,26 +72,28 @@ public class Factory {
     return result;
   }
 
-  public static Prop fromProperty(Context context, Type parent, String propertyName, Schema propertySchema) {
+  public static Prop fromProperty(Context context, Type parent, String name, Schema propertySchema) {
+    final StringTable strings = context.getStrings();
+    final String propertyName = strings.intern(name);
     final String type = propertySchema.getType();
 
     Prop prop;
     if (type == null && propertySchema.get$ref() != null) {
-      prop = new PropRef(parent, propertyName, propertySchema, propertySchema.get$ref());
+      prop = context.register(new PropRef(parent, propertyName, propertySchema, strings.intern(propertySchema.get$ref())));
     }
     else if (type != null) {
       if (type.equals("array")) {
-        final PropArray array = new PropArray(parent, propertyName, propertySchema);
+        final PropArray array = context.register(new PropArray(parent, propertyName, propertySchema));
         final Prop items = fromProperty(context, array, "items", propertySchema.getItems());
         array.setItems(items);
         prop = array;
       }
       else if (type.equals("object")) {
-        final Obj result = new Obj(parent, null, propertySchema);
-        prop = new PropObj(parent, propertySchema, result);
+        final Obj result = context.register(new Obj(parent, null, propertySchema));
+        prop = context.register(new PropObj(parent, propertySchema, result));
       }
       else if (GqlUtils.gqlScalar(type) != null) { // scalar includes object => JSON
-        prop = new PropScalar(parent, propertyName, GqlUtils.gqlScalar(type), propertySchema);
+        prop = context.register(new PropScalar(parent, propertyName, GqlUtils.gqlScalar(type), propertySchema));
       }
       else {
         throw new IllegalArgumentException("Cannot handle property type " + type);
@@ -94,17 +101,30 @@ public class Factory {
     }
     else if (propertySchema.getProperties() != null) {
       // we'll assume we are in an Obj
-      final Obj result = new Obj(parent, null, propertySchema);
-      prop = new PropObj(parent, propertySchema, result);
+      final Obj result = context.register(new Obj(parent, null, propertySchema));
+      prop = context.register(new PropObj(parent, propertySchema, result));
     }
     else {
       // we'll assume the type has no type, and we'll use the JSON scalar instead
-      prop = new PropScalar(parent, propertyName, "JSON", propertySchema);
+      prop = context.register(new PropScalar(parent, propertyName, "JSON", propertySchema));
     }
 
+    prop.setDescription(strings.intern(propertySchema.getDescription()));
+
     return prop;
   }
 
+  /* whether fromProperty would create a scalar for this schema, without creating anything */
+  public static boolean isScalarProperty(final Schema propertySchema) {
+    final String type = propertySchema.getType();
+
+    if (type == null) {
+      return propertySchema.get$ref() == null && propertySchema.getProperties() == null;
+    }
+
+    return !type.equals("array") && !type.equals("object") && GqlUtils.gqlScalar(type) != null;
+  }
+
   public static Param fromParam(final Context context, final Type parent, final Parameter p) {
     if (p.get$ref() != null) {
       throw new IllegalStateException("Don't know how to handle ref params yet: " + p);
@@ -113,24 +133,24 @@ public class Factory {
     final Schema schema = p.getSchema();
     var required = p.getRequired() != null && p.getRequired().equals(Boolean.TRUE);
 
-    return new Param(parent, p.getName(), schema, required, schema.getDefault());
+    return context.register(new Param(parent, context.getStrings().intern(p.getName()), schema, required, schema.getDefault()));
   }
 
   public static Type fromResponseRef(final Context context, final Type parent, final ApiResponse response) {
-    return new ResponseRef(parent, response.get$ref());
+    return context.register(new ResponseRef(parent, response.get$ref()));
   }
 
   public static Type fromUnion(final Context context, final Type parent, final List<Schema> oneOfs) {
-    final Union union = new Union(parent, parent.getSimpleName(), oneOfs);
+    final Union union = context.register(new Union(parent, context.getStrings().intern(parent.getSimpleName()), oneOfs));
     parent.add(union);
 
     return union;
   }
 
   public static Type fromResponse(final Context context, final Type parent, final Schema mediaSchema) {
-    final Response response = new Response(parent, "r", mediaSchema, null);
+    final Response response = context.register(new Response(parent, "r", mediaSchema, null));
 
-    final Type type = fromSchema(response, mediaSchema);
+    final Type type = fromSchema(context, response, mediaSchema);
     response.setResponseType(type);
 
     return response;
@@ -0,0 +1,93 @@
+package com.apollographql.oas.gen.jfr;
+
+import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.nodes.Type;
+import jdk.jfr.Event;
+
+import java.util.List;
+
+/**
+ * The Flight Recorder events of the engine. Until a recording enables them, beginning an event
+ * is a single check and nothing is allocated; once enabled, only the events lasting longer than
+ * their threshold ({@value #DEFAULT_THRESHOLD} unless set by the recording) are committed.
+ * <p>
+ * Recorded from the start with e.g. {@code -XX:StartFlightRecording:settings=profile}, or on
+ * demand from the web API's {@code /admin/recording}.
+ */
+public final class Events {
+  public static final String PREFIX = "com.apollographql.oas.gen.";
+  public static final String DEFAULT_THRESHOLD = "1 ms";
+
+  public static final List<Class<? extends Event>> ALL = List.of(
+    VisitEvent.class, GenerateEvent.class, SelectEvent.class, LookupRefEvent.class, RefCountEvent.class);
+
+  /* only asked whether their kind of event is enabled */
+  private static final VisitEvent VISIT = new VisitEvent();
+  private static final GenerateEvent GENERATE = new GenerateEvent();
+  private static final SelectEvent SELECT = new SelectEvent();
+  private static final LookupRefEvent LOOKUP_REF = new LookupRefEvent();
+  private static final RefCountEvent REF_COUNT = new RefCountEvent();
+
+  private Events() {
+  }
+
+  /* the event of a node entered, started, or null when not recorded */
+  public static NodeEvent begin(final Context.Activity activity) {
+    final NodeEvent event = switch (activity) {
+      case VISIT -> VISIT.isEnabled() ? new VisitEvent() : null;
+      case GENERATE -> GENERATE.isEnabled() ? new GenerateEvent() : null;
+      case SELECT -> SELECT.isEnabled() ? new SelectEvent() : null;
+    };
+
+    if (event != null) event.begin();
+    return event;
+  }
+
+  public static void end(final NodeEvent event, final Type type, final int depth) {
+    event.end();
+    if (!event.shouldCommit()) return;
+
+    event.kind = type.kind().name();
+    event.id = type.id();
+    event.nodeId = type.getNodeId();
+    event.depth = depth;
+    event.commit();
+  }
+
+  public static LookupRefEvent beginLookup() {
+    if (!LOOKUP_REF.isEnabled()) return null;
+
+    final LookupRefEvent event = new LookupRefEvent();
+    event.begin();
+    return event;
+  }
+
+  public static void end(final LookupRefEvent event, final String ref, final boolean found, final int depth) {
+    event.end();
+    if (!event.shouldCommit()) return;
+
+    event.ref = ref;
+    event.found = found;
+    event.depth = depth;
+    event.commit();
+  }
+
+  public static RefCountEvent beginCount() {
+    if (!REF_COUNT.isEnabled()) return null;
+
+    final RefCountEvent event = new RefCountEvent();
+    event.begin();
+    return event;
+  }
+
+  public static void end(final RefCountEvent event, final Type type, final int walked, final int types) {
+    event.end();
+    if (!event.shouldCommit()) return;
+
+    event.kind = type.kind().name();
+    event.id = type.id();
+    event.walked = walked;
+    event.types = types;
+    event.commit();
+  }
+}
@@ -0,0 +1,11 @@
+package com.apollographql.oas.gen.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(Events.PREFIX + "Generate")
+@Label("Generate")
+@Description("A node's generate, see Type#generate")
+public class GenerateEvent extends NodeEvent {
+}
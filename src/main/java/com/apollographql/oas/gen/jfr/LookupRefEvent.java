@@ -0,0 +1,21 @@
+package com.apollographql.oas.gen.jfr;
+
+import jdk.jfr.*;
+
+@Name(Events.PREFIX + "LookupRef")
+@Label("Lookup Ref")
+@Description("A ref resolved to its schema, see Context#lookupRef")
+@Category({"OAS Generator", "Context"})
+@StackTrace(false)
+@Threshold(Events.DEFAULT_THRESHOLD)
+public class LookupRefEvent extends Event {
+  @Label("Ref")
+  String ref;
+
+  @Label("Found")
+  boolean found;
+
+  @Label("Depth")
+  @Description("How many nodes are on the stack")
+  int depth;
+}
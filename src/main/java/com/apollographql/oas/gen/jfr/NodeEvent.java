@@ -0,0 +1,27 @@
+package com.apollographql.oas.gen.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A node on the context's stack, from the moment it is entered to the moment it is left: its
+ * children included.
+ */
+@Category({"OAS Generator", "Nodes"})
+@StackTrace(false)
+@Threshold(Events.DEFAULT_THRESHOLD)
+public abstract class NodeEvent extends Event {
+  @Label("Kind")
+  @Description("The kind of node, e.g. OBJ or PROP_REF")
+  String kind;
+
+  @Label("Id")
+  @Description("The path of the node from its operation")
+  String id;
+
+  @Label("Node Id")
+  int nodeId;
+
+  @Label("Depth")
+  @Description("How many nodes are on the stack, this one included")
+  int depth;
+}
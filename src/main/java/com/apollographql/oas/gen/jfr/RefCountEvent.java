@@ -0,0 +1,25 @@
+package com.apollographql.oas.gen.jfr;
+
+import jdk.jfr.*;
+
+@Name(Events.PREFIX + "RefCount")
+@Label("Ref Count")
+@Description("The types referenced from an operation counted, see RefCounter#count")
+@Category({"OAS Generator", "Context"})
+@StackTrace(false)
+@Threshold(Events.DEFAULT_THRESHOLD)
+public class RefCountEvent extends Event {
+  @Label("Kind")
+  String kind;
+
+  @Label("Id")
+  String id;
+
+  @Label("Walked")
+  @Description("The nodes walked from this one")
+  int walked;
+
+  @Label("Types")
+  @Description("The distinct types counted so far by this counter")
+  int types;
+}
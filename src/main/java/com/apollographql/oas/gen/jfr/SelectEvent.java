@@ -0,0 +1,11 @@
+package com.apollographql.oas.gen.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(Events.PREFIX + "Select")
+@Label("Select")
+@Description("A node's select, see Type#select")
+public class SelectEvent extends NodeEvent {
+}
@@ -0,0 +1,11 @@
+package com.apollographql.oas.gen.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(Events.PREFIX + "Visit")
+@Label("Visit")
+@Description("A node's visit, see Type#visit")
+public class VisitEvent extends NodeEvent {
+}
@@ -0,0 +1,241 @@
+package com.apollographql.oas.gen.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.*;
+
+/**
+ * Publishes records to another handler from a thread of its own: callers only enqueue their
+ * record into a bounded buffer, and the records are written, then flushed, in batches. When the
+ * buffer is full a record is either dropped ({@link Policy#DROP}, counted) or the caller waits
+ * for room ({@link Policy#BLOCK}).
+ * <p>
+ * Configured from {@code logging.properties}, e.g. in front of the file handler:
+ * <pre>
+ * handlers=com.apollographql.oas.gen.log.AsyncHandler
+ * com.apollographql.oas.gen.log.AsyncHandler.target=java.util.logging.FileHandler
+ * com.apollographql.oas.gen.log.AsyncHandler.capacity=8192
+ * com.apollographql.oas.gen.log.AsyncHandler.policy=drop
+ * com.apollographql.oas.gen.log.AsyncHandler.batch=256
+ * </pre>
+ * Records keep their order, and {@link #flush()} returns once every record published before it
+ * has been written. Should the thread die (an {@link Error} from the target), nothing waits for it
+ * anymore: flushing returns, and records are dropped.
+ */
+public class AsyncHandler extends Handler {
+  public static final int DEFAULT_CAPACITY = 8192;
+  public static final int DEFAULT_BATCH = 256;
+
+  /* how often a caller waiting on the worker checks it is still alive */
+  private static final long WAIT_MILLIS = 100;
+
+  public enum Policy {DROP, BLOCK}
+
+  private static final AtomicInteger threads = new AtomicInteger();
+
+  private final Handler target;
+  private final Policy policy;
+  private final int batch;
+
+  /* records, or a Marker to flush or close at */
+  private final BlockingQueue<Object> queue;
+  private final Thread worker;
+  private volatile boolean closed;
+
+  private final LongAdder dropped = new LongAdder();
+
+  /* configured from the LogManager's properties, prefixed by this class's name */
+  public AsyncHandler() {
+    this(AsyncHandler.class.getName());
+  }
+
+  /* configured from the LogManager's properties, or else the system properties, with the prefix */
+  public AsyncHandler(final String prefix) {
+    this(prefix, createTarget(property(prefix, "target", null)));
+  }
+
+  /* in front of the given target, the rest is configured as above */
+  public AsyncHandler(final String prefix, final Handler target) {
+    this(target,
+      Integer.parseInt(property(prefix, "capacity", String.valueOf(DEFAULT_CAPACITY))),
+      Policy.valueOf(property(prefix, "policy", Policy.BLOCK.name()).toUpperCase()),
+      Integer.parseInt(property(prefix, "batch", String.valueOf(DEFAULT_BATCH))));
+
+    final String level = property(prefix, "level", null);
+    if (level != null) setLevel(Level.parse(level));
+  }
+
+  public AsyncHandler(final Handler target, final int capacity, final Policy policy, final int batch) {
+    if (target == null) {
+      throw new IllegalArgumentException("Target handler must not be null");
+    }
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1, not " + capacity);
+    }
+    if (batch < 1) {
+      throw new IllegalArgumentException("Batch must be at least 1, not " + batch);
+    }
+
+    this.target = target;
+    this.policy = policy;
+    this.batch = batch;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+
+    this.worker = new Thread(this::drain, "oas-log-" + threads.incrementAndGet());
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  @Override
+  public void publish(final LogRecord record) {
+    if (closed || !isLoggable(record)) return;
+
+    if (policy == Policy.BLOCK ? !enqueue(record) : !queue.offer(record)) {
+      dropped.increment();
+    }
+  }
+
+  /* waits until every record published so far is written */
+  @Override
+  public void flush() {
+    if (closed) return;
+    await(new Marker(false));
+  }
+
+  /* writes what is left, then closes the target */
+  @Override
+  public synchronized void close() {
+    if (closed) return;
+
+    // nothing is published, nor flushed, once the worker may have stopped
+    closed = true;
+    await(new Marker(true));
+    target.close();
+
+    if (getDropped() > 0) {
+      reportError(getDropped() + " record(s) dropped, the buffer was full", null, ErrorManager.GENERIC_FAILURE);
+    }
+  }
+
+  public Handler getTarget() {
+    return target;
+  }
+
+  public Policy getPolicy() {
+    return policy;
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /* the records waiting to be written */
+  public int getPending() {
+    return queue.size();
+  }
+
+  /* waits for room in the buffer, unless the worker is gone */
+  private boolean enqueue(final Object item) {
+    try {
+      while (!queue.offer(item, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (!worker.isAlive()) return false;
+      }
+      return true;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void await(final Marker marker) {
+    // markers always wait for room, a flush is never dropped
+    if (!enqueue(marker)) return;
+
+    try {
+      while (!marker.reached.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (!worker.isAlive()) return;
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void drain() {
+    final List<Object> records = new ArrayList<>(batch);
+    try {
+      while (true) {
+        try {
+          records.add(queue.take());
+          queue.drainTo(records, batch - 1);
+        }
+        catch (InterruptedException e) {
+          return;
+        }
+
+        for (final Object record : records) {
+          if (record instanceof Marker marker) {
+            target.flush();
+            marker.reached.countDown();
+            if (marker.last) return;
+          }
+          else {
+            try {
+              target.publish((LogRecord) record);
+            }
+            catch (RuntimeException e) {
+              reportError(null, e, ErrorManager.WRITE_FAILURE);
+            }
+          }
+        }
+
+        // once per batch, not per record
+        target.flush();
+        records.clear();
+      }
+    }
+    finally {
+      // stopped, or died: whoever waits on a marker left is released
+      queue.drainTo(records);
+      for (final Object record : records) {
+        if (record instanceof Marker marker) marker.reached.countDown();
+      }
+    }
+  }
+
+  private static String property(final String prefix, final String name, final String fallback) {
+    String value = LogManager.getLogManager().getProperty(prefix + "." + name);
+    if (value == null) value = System.getProperty(prefix + "." + name);
+
+    return value != null ? value.trim() : fallback;
+  }
+
+  private static Handler createTarget(final String name) {
+    if (name == null) return new ConsoleHandler();
+
+    try {
+      final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+      return (Handler) Class.forName(name, true, loader != null ? loader : ClassLoader.getSystemClassLoader())
+        .getDeclaredConstructor().newInstance();
+    }
+    catch (ReflectiveOperationException | ClassCastException e) {
+      throw new IllegalArgumentException("Cannot create target handler '" + name + "'", e);
+    }
+  }
+
+  private static class Marker {
+    final boolean last;
+    final CountDownLatch reached = new CountDownLatch(1);
+
+    Marker(final boolean last) {
+      this.last = last;
+    }
+  }
+}
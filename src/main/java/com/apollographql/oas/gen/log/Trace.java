@@ -2,22 +2,69 @@ package com.apollographql.oas.gen.log;
 
 import com.apollographql.oas.gen.context.Context;
 
-import java.util.logging.Logger;
+import java.util.function.Supplier;
+import java.util.logging.*;
 
 import static java.util.logging.Level.WARNING;
 import static java.util.logging.Level.FINE;
 
+/**
+ * Traces the engine as it visits, generates and selects nodes. Tracing is off by default, and
+ * then costs a single check: messages that need to be built are passed as suppliers, and only
+ * built when tracing. Switched on with {@code -Doas.trace=true}, {@code --trace} on the command
+ * line, or {@link #setEnabled(boolean)}.
+ * <p>
+ * Traces, and every message printed, are written to the console by an {@link AsyncHandler}:
+ * printing never waits on the console, unless its buffer is full. It is configured with the
+ * {@value #CONSOLE} prefix, e.g. {@code -Doas.console.policy=drop} to drop messages rather than
+ * wait under load. Anything reading from or writing to the console directly calls {@link #flush()}
+ * first, so that it comes after what was printed.
+ */
 public class Trace {
+  public static final String PROPERTY = "oas.trace";
+
   private static final Logger logger = Logger.getLogger(Trace.class.getName());
 
+  public static final String CONSOLE = "oas.console";
+
+  private static boolean enabled = Boolean.getBoolean(PROPERTY);
+
+  private static final AsyncHandler console = new AsyncHandler(CONSOLE, new Console());
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(console::flush, "oas-console-flush"));
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static void setEnabled(final boolean enabled) {
+    Trace.enabled = enabled;
+  }
+
   public static void trace(final Context ctx, final String context, final String message) {
-    final int count = ctx != null ? ctx.size() : 0;
-//    logger.log(FINE, " ".repeat(count) + ("(" + count + ")") + context + " " + message);
-    System.out.println(" ".repeat(count) + ("(" + count + ")") + context + " " + message);
+    if (!enabled) return;
+    write(ctx, context, message);
+  }
+
+  /* the message is only built when tracing */
+  public static void trace(final Context ctx, final String context, final Supplier<String> message) {
+    if (!enabled) return;
+    write(ctx, context, message.get());
   }
 
   public static void print(final Context ctx, final String message) {
-    System.out.println((ctx != null ? " ".repeat(ctx.size()) : "") + message);
+    console.publish(new LogRecord(Level.INFO, (ctx != null ? " ".repeat(ctx.size()) : "") + message));
+  }
+
+  /* waits until everything printed so far is on the console */
+  public static void flush() {
+    console.flush();
+  }
+
+  public static AsyncHandler getConsole() {
+    return console;
   }
 
   public static String indent(final Context ctx) {
@@ -28,4 +75,28 @@ public class Trace {
 //    logger.log(WARNING, " ".repeat(ctx != null ? ctx.size() : 0) + context + " " + message);
     logger.log(WARNING, context + " " + message);
   }
+
+  private static void write(final Context ctx, final String context, final String message) {
+    final int count = ctx != null ? ctx.size() : 0;
+//    logger.log(FINE, " ".repeat(count) + ("(" + count + ")") + context + " " + message);
+    console.publish(new LogRecord(Level.INFO, " ".repeat(count) + ("(" + count + ")") + context + " " + message));
+  }
+
+  /* the messages as they are, one per line, on System.out: which is never closed */
+  private static class Console extends StreamHandler {
+    Console() {
+      super(System.out, new Formatter() {
+        @Override
+        public String format(final LogRecord record) {
+          return record.getMessage() + System.lineSeparator();
+        }
+      });
+      setLevel(Level.ALL);
+    }
+
+    @Override
+    public synchronized void close() {
+      flush();
+    }
+  }
 }
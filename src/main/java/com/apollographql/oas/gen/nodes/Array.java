@@ -1,20 +1,22 @@
 package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.util.List;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class Array extends Type {
-  private final Schema items;
+public final class Array extends Type {
+  private Schema items;
+  private String itemsKind;
   private Type itemsType;
 
   public Array(final Type parent, final Schema items) {
-    super(parent, "items");
+    super(parent, "items", Kind.ARRAY);
     this.items = items;
   }
 
@@ -33,16 +35,16 @@ public class Array extends Type {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
+    context.enter(this, Context.Activity.VISIT);
     trace(context,"-> [array]", "in");
 
     if (itemsType == null) {
-      itemsType = Factory.fromSchema(this, getItems());
+      itemsType = Factory.fromSchema(context, this, getItems());
       assert itemsType != null;
 
-      trace(context, "   [array]", "type: " + itemsType);
+      trace(context, "   [array]", () -> "type: " + itemsType);
       itemsType.visit(context);
-      setVisited(true);
+      context.setVisited(this);
     }
 
     trace(context,"-> [array]", "out");
@@ -50,32 +52,48 @@ public class Array extends Type {
   }
 
   @Override
-  public void generate(Context context, Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [array::generate]", String.format("-> in: %s", this.getSimpleName()));
+  public void generate(Context context, Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [array::generate]", () -> String.format("-> in: %s", this.getSimpleName()));
 
     writer.append("[");
     getItemsType().generate(context, writer);
     writer.append("]");
 
-    trace(context, "<- [array::generate]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [array::generate]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [array::select]", String.format("-> in: %s", this.getSimpleName()));
+  public void select(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.SELECT);
+    trace(context, "-> [array::select]", () -> String.format("-> in: %s", this.getSimpleName()));
 
     getItemsType().select(context, writer);
 
-    trace(context, "<- [array::select]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [array::select]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    if (getItemsType() == null) return null;
+
+    final String items = selectionKeys(context, List.of(getItemsType()));
+    return items != null ? "array(" + items + ")" : null;
+  }
+
   @Override
   public String getSimpleName() {
-    return getItems().getClass().getSimpleName();
+    return items != null ? items.getClass().getSimpleName() : itemsKind;
+  }
+
+  @Override
+  public void detach(final Context context) {
+    if (items == null || itemsType == null) return;
+
+    this.itemsKind = getSimpleName();
+    this.items = null;
   }
 
   @Override
@@ -83,8 +101,8 @@ public class Array extends Type {
     return "Array {" +
       "name='" + name + '\'' +
       ", items=" + getSimpleName() +
-      ", children=" + children.size() +
-      ", props=" + props.size() +
+      ", children=" + getChildren().size() +
+      ", props=" + getProps().size() +
       '}';
   }
 
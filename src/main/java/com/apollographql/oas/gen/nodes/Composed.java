@@ -2,6 +2,7 @@ package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.params.Param;
 import com.apollographql.oas.gen.nodes.props.Prop;
@@ -10,17 +11,18 @@ import io.swagger.v3.oas.models.media.ComposedSchema;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import static com.apollographql.oas.gen.log.Trace.*;
 
-public class Composed extends Type {
-  private final Schema schema;
+public final class Composed extends Type {
+  private Schema schema;
+  private boolean oneOf;
+  private boolean allOf;
 
   public Composed(final Type parent, final String name, final Schema schema) {
-    super(parent, name);
+    super(parent, name, Kind.COMPOSED);
     this.schema = schema;
   }
 
@@ -28,6 +30,23 @@ public class Composed extends Type {
     return schema;
   }
 
+  public boolean isOneOf() {
+    return schema != null ? schema.getOneOf() != null : oneOf;
+  }
+
+  public boolean isAllOf() {
+    return schema != null ? schema.getAllOf() != null : allOf;
+  }
+
+  @Override
+  public void detach(final Context context) {
+    if (schema == null || !context.isVisited(this)) return;
+
+    this.oneOf = schema.getOneOf() != null;
+    this.allOf = schema.getAllOf() != null;
+    this.schema = null;
+  }
+
   @Override
   public String id() {
 //    final Schema schema = getSchema();
@@ -45,7 +64,7 @@ public class Composed extends Type {
 
   @Override
   public Set<Type> dependencies(final Context context) {
-    if (!isVisited()) throw new IllegalStateException("Type should have been visited before asking for dependencies!");
+    if (!context.isVisited(this)) throw new IllegalStateException("Type should have been visited before asking for dependencies!");
 
     final Set<Type> set = new HashSet<>();
 
@@ -57,63 +76,71 @@ public class Composed extends Type {
   }
 
   @Override
-  public void generate(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [comp::generate]", String.format("-> in: %s", this.getName()));
+  public void generate(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [comp::generate]", () -> String.format("-> in: %s", this.getName()));
 
-    if (getSchema().getOneOf() != null) {
+    if (isOneOf()) {
       getChildren().get(0).generate(context, writer);
     }
-    else if (getSchema().getAllOf() != null) {
+    else if (isAllOf()) {
       if (!getProps().isEmpty()) {
         writer.append("type ")
           .append(NameUtils.getRefName(getName()))
           .append(" {\n");
 
-        for (Prop prop : this.getProps().values()) {
-          trace(context, "-> [comp::generate]", String.format("-> property: %s (parent: %s)", prop.getName(), prop.getParent().getSimpleName()));
-          prop.generate(context, writer);
-        }
+        trace(context, "-> [comp::generate]", () -> String.format("-> properties: %d", getProps().size()));
+        generateFields(context, writer);
 
         writer.append("}\n\n");
       }
     }
 
-    trace(context, "<- [comp::generate]", String.format("-> out: %s", this.getName()));
+    trace(context, "<- [comp::generate]", () -> String.format("-> out: %s", this.getName()));
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
-    if (context.getStack().contains(this)) {
+  public void select(final Context context, final Emitter writer) throws IOException {
+    if (context.isEntered(this)) {
       warn(context, "[comp::select]", "Possible recursion! Stack should not already contain " + this);
+      context.cut();
       return;
     }
-    context.enter(this);
-    trace(context, "-> [comp::select]", String.format("-> in: %s", this.getSimpleName()));
-
-    final Schema schema = getSchema();
+    context.enter(this, Context.Activity.SELECT);
+    trace(context, "-> [comp::select]", () -> String.format("-> in: %s", this.getSimpleName()));
 
-    if (schema.getAllOf() != null) {
-      for (Prop prop : getProps().values()) {
-        prop.select(context, writer);
-      }
+    if (isAllOf()) {
+      selectProps(context, writer);
     }
-    else if (schema.getOneOf() != null) {
+    else if (isOneOf()) {
       assert getChildren().size() == 1;
       getChildren().get(0).select(context, writer);
     }
 
-    trace(context, "<- [comp::select]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [comp::select]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    if (isAllOf()) {
+      final String props = selectionKeys(context, getProps().values());
+      return props != null ? "all-of(" + props + ")" : null;
+    }
+    else if (isOneOf()) {
+      final String child = selectionKeys(context, getChildren().subList(0, 1));
+      return child != null ? "one-of(" + child + ")" : null;
+    }
+    return "composed";
+  }
+
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [composed]", "in: " + (getName() == null ? "[object]" : getName()));
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [composed]", () -> "in: " + (getName() == null ? "[object]" : getName()));
 
-    if (!context.inContextOf(Composed.class, this) && !context.inContextOf(Param.class, this)) print(null, "In composed schema: " + getName());
+    if (!context.inContextOf(Kind.COMPOSED, this) && !context.inContextOf(Kind.PARAM, this)) print(null, "In composed schema: " + getName());
 
     final ComposedSchema schema = (ComposedSchema) getSchema();
     if (schema.getAllOf() != null) {
@@ -128,9 +155,9 @@ public class Composed extends Type {
       throw new IllegalStateException("Composed.visit: unsupported composed schema: " + schema.getClass().getSimpleName());
     }
 
-    setVisited(true);
+    context.setVisited(this);
 
-    trace(context, "<- [composed]", "out: " + getName());
+    trace(context, "<- [composed]", () -> "out: " + getName());
     context.leave();
   }
 
@@ -140,14 +167,14 @@ public class Composed extends Type {
     final List<Schema> allOfs = schema.getAllOf();
     final List<String> refs = allOfs.stream().map(Schema::get$ref).toList();
 
-    trace(context, "-> [composed::all-of]", "in: " + String.format("'%s' of: %d - refs: %s", name, allOfs.size(), refs));
+    trace(context, "-> [composed::all-of]", () -> "in: " + String.format("'%s' of: %d - refs: %s", name, allOfs.size(), refs));
 
     final Map<String, Prop> collected = new LinkedHashMap<>();
     for (int i = 0; i < allOfs.size(); i++) {
       final Schema allOfItemSchema = allOfs.get(i);
 
-      final Type type = Factory.fromSchema(this, allOfItemSchema);
-      trace(context, "   [composed::all-of]", "allOf type: " + type);
+      final Type type = Factory.fromSchema(context, this, allOfItemSchema);
+      trace(context, "   [composed::all-of]", () -> "allOf type: " + type);
       assert type != null;
 
       // we are visiting all the tree -- then we'll let them choose which properties they want to add
@@ -155,19 +182,23 @@ public class Composed extends Type {
       collected.putAll(type.getProps());
     }
 
-    final boolean inCompose = context.inContextOf(Composed.class, this);
+    registerFields(context, getName() + "#" + schema.hashCode(), collected.keySet());
+
+    final boolean inCompose = context.inContextOf(Kind.COMPOSED, this);
     if (inCompose) {
-      getProps().putAll(collected);
+      for (final Map.Entry<String, Prop> entry : collected.entrySet()) {
+        putField(entry.getKey(), entry.getValue());
+      }
     }
     else {
       promptPropertySelection(context, collected);
     }
 
     // we'll store it first, it might avoid recursion
-    trace(context, "-> [composed]", "storing: " + getName() + " with: " + this);
+    trace(context, "-> [composed]", () -> "storing: " + getName() + " with: " + this);
     context.store(getName(), this);
 
-    trace(context, "<- [composed::all-of]", "out: " + String.format("'%s' of: %d - refs: %s", name, allOfs.size(), refs));
+    trace(context, "<- [composed::all-of]", () -> "out: " + String.format("'%s' of: %d - refs: %s", name, allOfs.size(), refs));
   }
 
   private void promptPropertySelection(final Context context, final Map<String, Prop> properties) {
@@ -185,10 +216,10 @@ public class Composed extends Type {
       for (final Map.Entry<String, Prop> entry : properties.entrySet()) {
         final Prop prop = entry.getValue();
         if (addAll == 'y' || context.getPrompt().yesNo(prop.path(), "Add field '" + prop.forPrompt(context) + "'?")) {
-          trace(context, "   [composed::props]", "prop: " + prop);
+          trace(context, "   [composed::props]", () -> "prop: " + prop);
 
           // add property to our dependencies
-          getProps().put(prop.getName(), prop);
+          putField(prop.getName(), prop);
 
           if (!this.getChildren().contains(prop)) {
             this.add(prop);
@@ -200,17 +231,17 @@ public class Composed extends Type {
 
   private void visitOneOfNode(final Context context, final ComposedSchema schema) {
     final List<Schema> oneOfs = schema.getOneOf();
-    trace(context, "-> [composed::one-of]", "in: " + String.format("OneOf %s with size: %d", name, oneOfs.size()));
+    trace(context, "-> [composed::one-of]", () -> "in: " + String.format("OneOf %s with size: %d", name, oneOfs.size()));
 
     final Type result = Factory.fromUnion(context, this, oneOfs);
     assert result != null;
     result.visit(context);
 
-    trace(context, "-> [composed::one-of]", "storing: " + getName() + " with: " + this);
+    trace(context, "-> [composed::one-of]", () -> "storing: " + getName() + " with: " + this);
     if (getName() != null)
       context.store(getName(), this);
 
-    trace(context, "<- [composed::one-of]", "out: " + String.format("OneOf %s with size: %d", name, oneOfs.size()));
+    trace(context, "<- [composed::one-of]", () -> "out: " + String.format("OneOf %s with size: %d", name, oneOfs.size()));
   }
 
 }
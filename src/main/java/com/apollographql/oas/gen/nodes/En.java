@@ -2,13 +2,13 @@ package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.converter.utils.GqlUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.nodes.params.Param;
 import com.apollographql.oas.gen.nodes.props.Prop;
 import io.swagger.v3.oas.models.media.Schema;
 import joptsimple.internal.Strings;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -16,12 +16,13 @@ import java.util.Set;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class En extends Type {
-  private final Schema<?> schema;
+public final class En extends Type {
+  private Schema<?> schema;
+  private String scalarType;
   private final List<String> items;
 
   public En(final Type parent, final Schema<?> schema, final List<String> items) {
-    super(parent, "enum");
+    super(parent, "enum", Kind.ENUM);
     this.schema = schema;
     this.items = items;
   }
@@ -35,6 +36,25 @@ public class En extends Type {
     return items;
   }
 
+  public String getScalarType() {
+    if (schema != null) {
+      return GqlUtils.getGQLScalarType(schema);
+    }
+
+    if (scalarType == null) {
+      throw new IllegalStateException("[getGQLScalarType] Cannot generate type for enum " + getItems());
+    }
+    return scalarType;
+  }
+
+  @Override
+  public void detach(final Context context) {
+    if (schema == null) return;
+
+    this.scalarType = GqlUtils.gqlScalar(schema.getType());
+    this.schema = null;
+  }
+
   @Override
   public String id() {
     return "enum:" + getItems();
@@ -42,21 +62,21 @@ public class En extends Type {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [enum]", "in: " + getItems());
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [enum]", () -> "in: " + getItems());
 
-    setVisited(true);
+    context.setVisited(this);
 
-    trace(context, "<- [enum]", "out: " + getItems());
+    trace(context, "<- [enum]", () -> "out: " + getItems());
     context.leave();
   }
 
   @Override
-  public void generate(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [enum::generate]", String.format("-> in: %s", this.getSimpleName()));
+  public void generate(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [enum::generate]", () -> String.format("-> in: %s", this.getSimpleName()));
 
-    if (!context.inContextOf(Param.class, this)) {
+    if (!context.inContextOf(Kind.PARAM, this)) {
       String builder = "enum " +
         getSimpleName() +
         " {\n" +
@@ -65,21 +85,21 @@ public class En extends Type {
 
       writer.write(builder);
     }
-    else if (!context.inContextOf(Union.class, this)) {
+    else if (!context.inContextOf(Kind.UNION, this)) {
       // this is a very weird combination of a
       // #union:String + Enum.'me'
-      writer.write(GqlUtils.getGQLScalarType(getSchema()));
+      writer.write(getScalarType());
     }
     // else do nothing
 
-    trace(context, "<- [enum::generate]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [enum::generate]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [ref::select]", String.format("-> in: %s", this.getSimpleName()));
+  public void select(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.SELECT);
+    trace(context, "-> [ref::select]", () -> String.format("-> in: %s", this.getSimpleName()));
 
     Set<Type> dependencies = dependencies(context);
 
@@ -87,7 +107,7 @@ public class En extends Type {
       dependency.select(context, writer);
     }
 
-    trace(context, "<- [ref::select]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [ref::select]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
@@ -2,6 +2,7 @@ package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.params.Param;
 import com.apollographql.oas.gen.nodes.props.PropArray;
@@ -13,14 +14,14 @@ import io.swagger.v3.oas.models.parameters.Parameter;
 import io.swagger.v3.oas.models.responses.ApiResponse;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.*;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 import static com.apollographql.oas.gen.log.Trace.warn;
 
-public class GetOp extends Type {
-  private final Operation get;
+public final class GetOp extends Type {
+  private Operation get;
+  private String gqlOpName;
 
   private String originalPath;
   private String summary;
@@ -30,7 +31,7 @@ public class GetOp extends Type {
   private Type resultType;
 
   public GetOp(final String name, final Operation get) {
-    super(null, name);
+    super(null, name, Kind.GET_OP);
     this.get = get;
   }
 
@@ -69,8 +70,8 @@ public class GetOp extends Type {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [get]", "in " + getName());
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [get]", () -> "in " + getName());
 
     // 1. visit parameters
     visitParameters(context);
@@ -78,8 +79,8 @@ public class GetOp extends Type {
     // 2. visit responses
     visitResponses(context);
 
-    setVisited(true);
-    trace(context, "<- [get]", "out " + getName());
+    context.setVisited(this);
+    trace(context, "<- [get]", () -> "out " + getName());
     context.leave();
   }
 
@@ -91,7 +92,7 @@ public class GetOp extends Type {
   }
 
   private void visitParameters(final Context context) {
-    trace(context, "-> [get::parameters]", "in: " + getName());
+    trace(context, "-> [get::parameters]", () -> "in: " + getName());
 
     if (this.get.getParameters() != null && !this.get.getParameters().isEmpty()) {
       this.parameters = this.get.getParameters().stream()
@@ -102,11 +103,11 @@ public class GetOp extends Type {
       this.parameters = Collections.emptyList();
     }
 
-    trace(context, "<- [get::parameters]", "out: " + getName());
+    trace(context, "<- [get::parameters]", () -> "out: " + getName());
   }
 
   private void visitResponses(final Context context) {
-    trace(context, "-> [get::responses]", "in " + getName());
+    trace(context, "-> [get::responses]", () -> "in " + getName());
 
     final List<Map.Entry<String, ApiResponse>> filtered = this.get.getResponses().entrySet().stream()
       .filter(e -> e.getKey().equals("200")) // || e.getKey().equals("default"))
@@ -122,7 +123,7 @@ public class GetOp extends Type {
       visitResponse(context, e.getKey(), e.getValue());
     }
 
-    trace(context, "<- [get::responses]", "out " + getName());
+    trace(context, "<- [get::responses]", () -> "out " + getName());
   }
 
   private void visitResponse(final Context context, String code, final ApiResponse response) {
@@ -144,20 +145,19 @@ public class GetOp extends Type {
   }
 
   private void visitResponseContent(final Context context, final String code, final ApiResponse response) {
-    trace(context, "-> [get::responses::content]", "in " + getName());
+    trace(context, "-> [get::responses::content]", () -> "in " + getName());
 
     final Content content = response.getContent();
     final MediaType mediaType = findJsonContent(content).get().getValue();
 
-//    this.resultType = Factory.fromSchema(this, mediaType.getSchema());
+//    this.resultType = Factory.fromSchema(context, this, mediaType.getSchema());
     this.resultType = Factory.fromResponse(context, this, mediaType.getSchema());
     this.resultType.visit(context);
 
-    final List<Type> children = getChildren();
-    if (!children.contains(this.resultType))
-      children.add(getResultType());
+    if (!getChildren().contains(this.resultType))
+      add(getResultType());
 
-    trace(context, "<- [get::responses::content]", "out " + getName());
+    trace(context, "<- [get::responses::content]", () -> "out " + getName());
   }
 
   private static Optional<Map.Entry<String, MediaType>> findJsonContent(final Content content) {
@@ -168,18 +168,18 @@ public class GetOp extends Type {
   }
 
   private void visitResponseRef(final Context context, final ApiResponse response) {
-    trace(context, "-> [get::responses::ref]", "in: " + getName() + ", ref: " + response.get$ref());
+    trace(context, "-> [get::responses::ref]", () -> "in: " + getName() + ", ref: " + response.get$ref());
 
     final ApiResponse lookup = context.lookupResponse(response.get$ref());
     visitResponse(context, response.get$ref(), lookup);
 
-    trace(context, "<- [get::responses::ref]", "out: " + getName());
+    trace(context, "<- [get::responses::ref]", () -> "out: " + getName());
   }
 
   @Override
-  public void generate(Context context, Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [get::generate]", String.format("-> in: %s", this.getName()));
+  public void generate(Context context, Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [get::generate]", () -> String.format("-> in: %s", this.getName()));
 
     if (getSummary() != null || getOriginalPath() != null) {
       writer.append("  \"\"\"\n").append("  ");
@@ -210,21 +210,42 @@ public class GetOp extends Type {
     writer.append("\n");
 //    writer.write(writer.toString());
 
-    trace(context, "<- [get::generate]", String.format("-> out: %s", this.getName()));
+    trace(context, "<- [get::generate]", () -> String.format("-> out: %s", this.getName()));
     context.leave();
   }
 
   public String getGqlOpName() {
-    return NameUtils.genOperationName(getOriginalPath(), getGet());
+    // mangled once, it is asked for by the response's and the inlined types' names too
+    if (gqlOpName == null && get != null) {
+      this.gqlOpName = NameUtils.genOperationName(getOriginalPath(), get);
+    }
+    return gqlOpName;
+  }
+
+  @Override
+  public void freeze(final Context context) {
+    super.freeze(context);
+
+    for (final Param parameter : getParameters()) {
+      parameter.freeze(context);
+    }
+  }
+
+  @Override
+  public void detach(final Context context) {
+    if (get == null || !context.isVisited(this)) return;
+
+    this.gqlOpName = getGqlOpName();
+    this.get = null;
   }
 
   @Override
   public Set<Type> dependencies(final Context context) {
-    if (!isVisited()) throw new IllegalStateException("Type should have been visited before asking for dependencies!");
+    if (!context.isVisited(this)) throw new IllegalStateException("Type should have been visited before asking for dependencies!");
     return Set.of(getResultType());
   }
 
-  private void generateParameters(Context context, Writer writer) throws IOException {
+  private void generateParameters(Context context, Emitter writer) throws IOException {
     final List<? extends Type> parameters = getParameters();
 
     if (parameters.isEmpty()) return;
@@ -242,14 +263,14 @@ public class GetOp extends Type {
   }
 
   private Param visitParameter(final Context context, final Type parent, final Parameter p) {
-    trace(context, "->[visitParameter]", "begin: " + p.getName());
+    trace(context, "->[visitParameter]", () -> "begin: " + p.getName());
 
     final Param param = Factory.fromParam(context, parent, p);
     assert param != null;
 
     param.visit(context);
 
-    trace(context, "<-[visitParameter]", "end: " + p.getName());
+    trace(context, "<-[visitParameter]", () -> "end: " + p.getName());
     return param;
   }
 }
@@ -0,0 +1,38 @@
+package com.apollographql.oas.gen.nodes;
+
+/**
+ * Closed set of node kinds, one per concrete {@link Type}. Traversals that need to tell nodes
+ * apart switch on {@link Type#kind()} rather than chaining {@code instanceof} checks.
+ */
+public enum Kind {
+  GET_OP,
+  PARAM,
+  RESPONSE,
+  RESPONSE_REF,
+  REF,
+  OBJ,
+  COMPOSED,
+  UNION,
+  ARRAY,
+  ENUM,
+  SCALAR,
+  PROP_SCALAR,
+  PROP_REF,
+  PROP_ARRAY,
+  PROP_OBJ;
+
+  public boolean isProp() {
+    return switch (this) {
+      case PROP_SCALAR, PROP_REF, PROP_ARRAY, PROP_OBJ -> true;
+      default -> false;
+    };
+  }
+
+  /* kinds that are selected with a nested { ... } block */
+  public boolean isComposite() {
+    return switch (this) {
+      case OBJ, COMPOSED, UNION -> true;
+      default -> false;
+    };
+  }
+}
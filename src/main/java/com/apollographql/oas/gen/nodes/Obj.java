@@ -1,28 +1,28 @@
 package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.converter.utils.NameUtils;
+import com.apollographql.oas.gen.context.ComponentCache;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.props.Prop;
-import com.apollographql.oas.gen.nodes.props.PropArray;
-import com.apollographql.oas.gen.nodes.props.PropRef;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import static com.apollographql.oas.gen.log.Trace.*;
 
 @SuppressWarnings({"ALL", "unchecked"})
-public class Obj extends Type {
+public final class Obj extends Type {
 
-  private final Schema schema;
-  private boolean visited;
+  private Schema schema;
+  private int schemaHash;
+  private String schemaKey;
 
   public Obj(final Type parent, final String name, final Schema schema) {
-    super(parent, name);
+    super(parent, name, Kind.OBJ);
     this.schema = schema;
   }
 
@@ -41,19 +41,12 @@ public class Obj extends Type {
       final Type parent = getParent();
       final String parentName = parent.getName();
 
-      if (parent instanceof Ref) {
-        this.name = parentName.replace("ref:", "obj:");
-      }
-      else if (parent instanceof Array || parent instanceof PropArray) {
-        this.name = NameUtils.getRefName(parentName) + "Item";
-      }
-      else if (parent instanceof Response) {
-        GetOp op = (GetOp) parent.getParent();
+      switch (parent.kind()) {
+        case REF -> this.name = parentName.replace("ref:", "obj:");
+        case ARRAY, PROP_ARRAY -> this.name = NameUtils.getRefName(parentName) + "Item";
         // happens when the response is inlined
-        this.name = op.getGqlOpName() + "Response";
-      }
-      else {
-        this.name = "[anonymous:" + hashCode() + "]";
+        case RESPONSE -> this.name = ((GetOp) parent.getParent()).getGqlOpName() + "Response";
+        default -> this.name = "[anonymous:" + hashCode() + "]";
       }
     }
 
@@ -70,34 +63,34 @@ public class Obj extends Type {
 
   @Override
   public void visit(final Context context) {
-    if (isVisited()) return;
+    if (context.isVisited(this)) return;
 
-    context.enter(this);
-    trace(context, "-> [obj]", "in " + getName());
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [obj]", () -> "in " + getName());
 
-    if (!context.inContextOf(Composed.class, this))
+    if (!context.inContextOf(Kind.COMPOSED, this))
       print(null, "In object: " + (getName() != null ? getName() : getOwner()));
 
     visitProperties(context);
-    setVisited(true);
+    context.setVisited(this);
 
     // we don't store Anonymous objects
     if (getName() != null)
       context.store(getName(), this);
 
-    trace(context, "<- [obj]", "out " + getName());
+    trace(context, "<- [obj]", () -> "out " + getName());
     context.leave();
   }
 
   @Override
   public Set<Type> dependencies(final Context context) {
-    if (!isVisited()) {
+    if (!context.isVisited(this)) {
       this.visit(context);
     }
 
     final Set<Type> set = new HashSet<>();
 
-    for (Type p : getProps().values().stream().filter(p -> p instanceof PropRef || p instanceof PropArray).toList()) {
+    for (Type p : getProps().values().stream().filter(Obj::isDependency).toList()) {
       final Set<Type> dependencies = p.dependencies(context);
       set.addAll(dependencies);
     }
@@ -106,85 +99,100 @@ public class Obj extends Type {
   }
 
   @Override
-  public void generate(final Context context, final Writer writer) throws IOException {
+  public void generate(final Context context, final Emitter writer) throws IOException {
     if (getProps().isEmpty()) {
       return;
     }
 
-    if (context.inContextOf(Response.class, this)) {
+    if (context.inContextOf(Kind.RESPONSE, this)) {
       writer.append(NameUtils.getRefName(getName()));
       return;
     }
 
-    context.enter(this);
-    trace(context, "-> [obj::generate]", String.format("-> in: %s", this.getName()));
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [obj::generate]", () -> String.format("-> in: %s", this.getName()));
 
     writer.append("type ")
       .append(NameUtils.getRefName(getName()))
       .append(" {\n");
 
-    for (Prop prop : this.getProps().values()) {
-      trace(context, "-> [obj::generate]", String.format("-> property: %s (parent: %s)", prop.getName(), prop.getParent().getSimpleName()));
-      prop.generate(context, writer);
-    }
+    trace(context, "-> [obj::generate]", () -> String.format("-> properties: %d", getProps().size()));
+    generateFields(context, writer);
 
     writer.append("}\n\n");
 
-    trace(context, "<- [obj::generate]", String.format("-> out: %s", this.getName()));
+    trace(context, "<- [obj::generate]", () -> String.format("-> out: %s", this.getName()));
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
-    if (context.getStack().contains(this)) {
+  public void select(final Context context, final Emitter writer) throws IOException {
+    if (context.isEntered(this)) {
       warn(context, "[obj::select]", "Possible recursion! Stack should not already contain " + this);
+      context.cut();
       return;
     }
-    context.enter(this);
-    trace(context, "-> [ref::select]", String.format("-> in: %s", this.getSimpleName()));
+    context.enter(this, Context.Activity.SELECT);
+    trace(context, "-> [ref::select]", () -> String.format("-> in: %s", this.getSimpleName()));
 
-    for (Prop prop : this.getProps().values()) {
-      prop.select(context, writer);
-    }
+    selectProps(context, writer);
 
-    trace(context, "<- [ref::select]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [ref::select]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    final String props = selectionKeys(context, getProps().values());
+    return props != null ? "obj(" + props + ")" : null;
+  }
+
+  @Override
+  public void detach(final Context context) {
+    if (schema == null || !context.isVisited(this)) return;
+
+    // keep the schema's hash and structural key, so that equality and anonymous names are unchanged
+    this.schemaHash = schema.hashCode();
+    this.schemaKey = context.keyOf(schema);
+    this.schema = null;
+  }
+
   @Override
   public String toString() {
     return "Obj {" +
       "name='" + name + '\'' +
-      ", children=" + children.size() +
-      ", props=" + props.size() +
+      ", children=" + getChildren().size() +
+      ", props=" + getProps().size() +
       '}';
   }
 
   private void visitProperties(final Context context) {
     //noinspection unchecked
     final Map<String, Schema> properties = schema.getProperties();
-    trace(context, "-> [obj::props]", "in props " + (properties.isEmpty() ? "0" : properties.size()));
+    trace(context, "-> [obj::props]", () -> "in props " + (properties.isEmpty() ? "0" : properties.size()));
 
     if (properties.isEmpty()) {
-      trace(context, "<- [obj::props]", "no props " + getProps().size());
+      trace(context, "<- [obj::props]", () -> "no props " + getProps().size());
       return;
     }
 
-    final Set<Map.Entry<String, Schema>> sorted = properties.entrySet()
+    // each property node is built once, and reused for both the prompt and the selection
+    final Map<String, Prop> collected = new LinkedHashMap<>();
+    properties.entrySet()
       .stream()
+      .filter(e -> !context.isScalarsOnly() || Factory.isScalarProperty(e.getValue()))
       .sorted((o1, o2) -> o1.getKey().compareToIgnoreCase(o2.getKey()))
-      .collect(Collectors.toCollection(LinkedHashSet::new));
+      .forEach(e -> collected.put(e.getKey(), Factory.fromProperty(context, this, e.getKey(), e.getValue())));
 
-    final Map<String, Prop> collected = sorted.stream()
-      .map(e -> Factory.fromProperty(context, this, e.getKey(), e.getValue()))
-      .collect(Collectors.toMap(Prop::getName, prop -> prop));
+    // the schema's hash tells apart two types with the same name
+    registerFields(context, getName() + "#" + schema.hashCode(), collected.keySet());
 
     final String propertiesNames = collected.values().stream()
       .map(p -> p.forPrompt(context))
       .collect(Collectors.joining(",\n - "));
 
-    final boolean inCompose = context.inContextOf(Composed.class, this);
-    trace(context, "   [obj::props]", getSimpleName() + " is within compose context? " + inCompose);
+    final boolean inCompose = context.inContextOf(Kind.COMPOSED, this);
+    trace(context, "   [obj::props]", () -> getSimpleName() + " is within compose context? " + inCompose);
 
     final char addAll = inCompose ? 'y' : context.getPrompt()
       .yesNoSelect(path(), " -> Add all properties from [object] " + getOwner() + "?: \n - " + propertiesNames + "\n");
@@ -194,17 +202,15 @@ public class Obj extends Type {
      * 2. the comp://all-of contains our name (i.e: #/component/schemas/Extensible
      */
     if ((addAll == 'y' || addAll == 's')) {
-      for (final Map.Entry<String, Schema> entry : sorted) {
+      for (final Map.Entry<String, Prop> entry : collected.entrySet()) {
         final String propertyName = entry.getKey();
-        final Schema propertySchema = entry.getValue();
-
-        final Prop prop = Factory.fromProperty(context, this, propertyName, propertySchema);
+        final Prop prop = entry.getValue();
 
         if (addAll == 'y' || context.getPrompt().yesNo(prop.path(), "Add field '" + prop.forPrompt(context) + "'?")) {
-          trace(context, "   [obj::props]", "prop: " + prop);
+          trace(context, "   [obj::props]", () -> "prop: " + prop);
 
           // add property to our dependencies
-          getProps().put(propertyName, prop);
+          putField(propertyName, prop);
 
           if (!this.getChildren().contains(prop)) {
             this.add(prop);
@@ -218,22 +224,32 @@ public class Obj extends Type {
     // instead of adding them as a dependency
     addDependencies(context);
 
-    trace(context, "<- [obj::props]", "out props " + getProps().size());
+    trace(context, "<- [obj::props]", () -> "out props " + getProps().size());
+  }
+
+  private static boolean isDependency(final Type prop) {
+    return switch (prop.kind()) {
+      case PROP_REF, PROP_ARRAY -> true;
+      default -> false;
+    };
   }
 
   private void addDependencies(final Context context) {
-    final boolean inCompose = context.inContextOf(Composed.class, this);
+    final boolean inCompose = context.inContextOf(Kind.COMPOSED, this);
+
+    // there are only scalars to visit
+    if (context.isScalarsOnly()) return;
 
     if (!inCompose) {
       final List<Prop> dependencies = getProps().values().stream()
         .filter(p -> {
-          trace(context, "-> [obj]", "visitProperties - NOT inCompose, in " + id());
-          return p instanceof PropRef || p instanceof PropArray;
+          trace(context, "-> [obj]", () -> "visitProperties - NOT inCompose, in " + id());
+          return isDependency(p);
         })
         .toList();
 
       for (final Prop dependency : dependencies) {
-        trace(context, "-> [obj]", "prop dependency: " + dependency.getName());
+        trace(context, "-> [obj]", () -> "prop dependency: " + dependency.getName());
         dependency.visit(context);
       }
     }
@@ -245,12 +261,24 @@ public class Obj extends Type {
     if (o == null || getClass() != o.getClass()) return false;
     if (!super.equals(o)) return false;
     final Obj obj = (Obj) o;
-    return Objects.equals(schema, obj.schema);
+    if (schema != null && obj.schema != null) {
+      return Objects.equals(schema, obj.schema);
+    }
+    // once detached, hashes can collide: only the structural key tells the schemas apart
+    return getSchemaHash() == obj.getSchemaHash() && getSchemaKey().equals(obj.getSchemaKey());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(super.hashCode(), schema);
+    return Objects.hash(super.hashCode(), getSchemaHash());
+  }
+
+  private int getSchemaHash() {
+    return schema != null ? schema.hashCode() : schemaHash;
+  }
+
+  private String getSchemaKey() {
+    return schema != null ? ComponentCache.keyOf(schema) : schemaKey;
   }
 
 }
@@ -2,22 +2,24 @@ package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.props.Prop;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class Ref extends Type {
+public final class Ref extends Type {
   private final String ref;
   private Type refType;
 
   public Ref(final Type parent, final String name, final String ref) {
-    super(parent, name);
+    super(parent, name, Kind.REF);
     this.ref = ref;
   }
 
@@ -36,15 +38,21 @@ public class Ref extends Type {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [ref]", "in: " + getRef());
+    if (context.isRecursionCut(getRef())) {
+      trace(context, "   [ref]", () -> "recursion cut: " + getRef());
+      context.setVisited(this);
+      return;
+    }
+
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [ref]", () -> "in: " + getRef());
 
 //    final Type cached = context.get(getRef());
 //    if (cached == null) {
     final Schema schema = context.lookupRef(getRef());
     assert schema != null;
 
-    final Type type = Factory.fromSchema(this, schema);
+    final Type type = Factory.fromSchema(context, this, schema);
     assert type != null;
     this.refType = type;
 //    }
@@ -55,25 +63,25 @@ public class Ref extends Type {
     this.refType.setName(getRef());
     this.refType.visit(context);
 
-    setVisited(true);
+    context.setVisited(this);
 
-    trace(context, "<- [ref]", "out: " + getRef());
+    trace(context, "<- [ref]", () -> "out: " + getRef());
     context.leave();
   }
 
   @Override
-  public void generate(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [ref::generate]", String.format("-> in: %s", this.getSimpleName()));
+  public void generate(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [ref::generate]", () -> String.format("-> in: %s", this.getSimpleName()));
 
-    if (context.inContextOf(Response.class, this) && getRefType() instanceof Array) {
+    if (context.inContextOf(Kind.RESPONSE, this) && getRefType() != null && getRefType().kind() == Kind.ARRAY) {
       writer.append("[").append(getFirstChild().getName()).append("]");
     }
     else {
       writer.write(NameUtils.getRefName(getRef()));
     }
 
-    trace(context, "<- [ref::generate]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [ref::generate]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
@@ -82,27 +90,38 @@ public class Ref extends Type {
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [ref::select]", String.format("-> in: %s", this.getSimpleName()));
+  public void select(final Context context, final Emitter writer) throws IOException {
+    // a recursion cut, there is nothing to select
+    if (getRefType() == null) return;
+
+    context.enter(this, Context.Activity.SELECT);
+    trace(context, "-> [ref::select]", () -> String.format("-> in: %s", this.getSimpleName()));
 
     getRefType().select(context, writer);
 
-    trace(context, "<- [ref::select]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [ref::select]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    if (getRefType() == null) return "ref";
+
+    final String ref = selectionKeys(context, List.of(getRefType()));
+    return ref != null ? "ref(" + ref + ")" : null;
+  }
+
   @Override
   public Map<String, Prop> getProps() {
-    return getRefType().getProps();
+    return getRefType() != null ? getRefType().getProps() : Collections.emptyMap();
   }
 
   @Override
   public String toString() {
     return "Ref {" +
       "name='" + name + '\'' +
-      ", children=" + children.size() +
-      ", props=" + props.size() +
+      ", children=" + getChildren().size() +
+      ", props=" + super.getProps().size() +
       '}';
   }
 }
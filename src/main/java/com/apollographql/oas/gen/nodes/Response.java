@@ -1,16 +1,16 @@
 package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.Set;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class Response extends Type {
-  private final Schema mediaSchema;
+public final class Response extends Type {
+  private Schema mediaSchema;
 
   public Schema getMediaSchema() {
     return mediaSchema;
@@ -28,7 +28,7 @@ public class Response extends Type {
 
 
   public Response(final Type parent, final String name, final Schema mediaSchema, final Type response) {
-    super(parent, name);
+    super(parent, name, Kind.RESPONSE);
     this.mediaSchema = mediaSchema;
     this.responseType = response;
   }
@@ -40,38 +40,43 @@ public class Response extends Type {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [get::responses::content]", "in " + getName());
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [get::responses::content]", () -> "in " + getName());
 
     getResponseType().visit(context);
-    setVisited(true);
+    context.setVisited(this);
 
-    trace(context, "<- [get::responses::content]", "out " + getName());
+    trace(context, "<- [get::responses::content]", () -> "out " + getName());
     context.leave();
   }
 
   @Override
-  public void generate(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [response::generate]", String.format("-> in: %s", getParent().getName()));
+  public void generate(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [response::generate]", () -> String.format("-> in: %s", getParent().getName()));
 
     getResponseType().generate(context, writer);
 
-    trace(context, "<- [response::generate]", String.format("-> out: %s", getParent().getName()));
+    trace(context, "<- [response::generate]", () -> String.format("-> out: %s", getParent().getName()));
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [response::select]", String.format("-> in: %s", getParent().getName()));
+  public void select(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.SELECT);
+    trace(context, "-> [response::select]", () -> String.format("-> in: %s", getParent().getName()));
 
     getResponseType().select(context, writer);
 
-    trace(context, "<- [response::select]", String.format("-> out: %s", getParent().getName()));
+    trace(context, "<- [response::select]", () -> String.format("-> out: %s", getParent().getName()));
     context.leave();
   }
 
+  @Override
+  public void detach(final Context context) {
+    this.mediaSchema = null;
+  }
+
   @Override
   public Set<Type> dependencies(final Context context) {
     return super.dependencies(context);
@@ -7,13 +7,13 @@ import io.swagger.v3.oas.models.media.Schema;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class ResponseRef extends Type {
+public final class ResponseRef extends Type {
   private final String ref;
 
   private Type refType;
 
   public ResponseRef(final Type parent, final String ref) {
-    super(parent, NameUtils.getRefName(ref));
+    super(parent, NameUtils.getRefName(ref), Kind.RESPONSE_REF);
     this.ref = ref;
   }
 
@@ -23,7 +23,7 @@ public class ResponseRef extends Type {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
+    context.enter(this, Context.Activity.VISIT);
     trace(context, "-> [ref]", "in");
 
     final Type cached = context.get(getRef());
@@ -31,7 +31,7 @@ public class ResponseRef extends Type {
       final Schema schema = context.lookupRef(getRef());
       assert schema != null;
 
-      final Type type = Factory.fromSchema(this, schema);
+      final Type type = Factory.fromSchema(context, this, schema);
       assert type != null;
       this.refType = type;
 
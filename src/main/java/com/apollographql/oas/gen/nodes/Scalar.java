@@ -2,16 +2,16 @@ package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.converter.utils.GqlUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class Scalar extends Type {
+public final class Scalar extends Type {
   public Scalar(final Type parent, final Schema schema) {
-    super(parent, GqlUtils.getGQLScalarType(schema));
+    super(parent, GqlUtils.getGQLScalarType(schema), Kind.SCALAR);
   }
 
   @Override
@@ -22,25 +22,30 @@ public class Scalar extends Type {
   @Override
   public void visit(final Context context) {
     // do nothing - scalars don't visit others
-    setVisited(true);
+    context.setVisited(this);
   }
 
   @Override
-  public void generate(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [scalar::generate]", String.format("-> in: %s", this.getSimpleName()));
+  public void generate(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [scalar::generate]", () -> String.format("-> in: %s", this.getSimpleName()));
 
     writer.write(getName());
 
-    trace(context, "<- [scalar::generate]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [scalar::generate]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
+  public void select(final Context context, final Emitter writer) throws IOException {
 //    writer.write(">>>>> SCALAR");
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    return "scalar";
+  }
+
   @Override
   public String toString() {
     return "Scalar {" +
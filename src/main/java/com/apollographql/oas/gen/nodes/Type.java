@@ -2,11 +2,13 @@ package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.context.FieldTable;
+import com.apollographql.oas.gen.context.SelectionTable;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.nodes.props.Prop;
 import com.apollographql.oas.gen.nodes.props.PropRef;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -14,16 +16,59 @@ import static com.apollographql.oas.gen.log.Trace.warn;
 
 public abstract class Type implements Cloneable {
   protected String name;
-  protected List<Type> children = new LinkedList<>();
   private final Type parent;
+  private final Kind kind;
 
-  protected Map<String, Prop> props = new LinkedHashMap<>();
+  /* allocated on first add, most nodes are leaves and never need them */
+  private List<Type> children;
+  private Map<String, Prop> props;
 
-  protected boolean visited;
+  /* the candidate fields of the type, and which of them were selected, see #putField */
+  private FieldTable.Fields fields;
+  private BitSet mask;
 
-  public Type(final Type parent, final String name) {
+  /* the selection key and the context version it was computed at, see #getSelectionKey */
+  private static final long UNKEYED = -1L;
+  private volatile long selection = UNKEYED;
+
+  private int nodeId = -1;
+  private int symbol = -1;
+
+  /* written last when freezing, so that readers seeing it also see the frozen state */
+  private volatile boolean frozen;
+
+  public Type(final Type parent, final String name, final Kind kind) {
     this.parent = parent;
     this.name = name;
+    this.kind = kind;
+  }
+
+  /* the concrete node this is, set once by its constructor */
+  public final Kind kind() {
+    return kind;
+  }
+
+  /**
+   * Dense id assigned by {@link Context#register(Type)} when the node is created, used to
+   * index the per-node state (visited, etc.) kept in the context.
+   */
+  public int getNodeId() {
+    return nodeId;
+  }
+
+  public void setNodeId(final int nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  /**
+   * Dense id of this node's name, shared by every node with the same name. Used to index
+   * the per-type state (e.g. ref counts) kept in the context.
+   */
+  public int getSymbol(final Context context) {
+    if (symbol < 0) {
+      symbol = context.symbolOf(getName());
+    }
+    return symbol;
   }
 
   public String id() {
@@ -46,23 +91,153 @@ public abstract class Type implements Cloneable {
 
   public void setName(final String name) {
     this.name = name;
-  }
-
-  public boolean isVisited() {
-    return visited;
-  }
-
-  public void setVisited(final boolean visited) {
-    this.visited = visited;
+    this.symbol = -1;
+    this.selection = UNKEYED;
   }
 
   public void add(Type child) {
+    checkNotFrozen();
+
     if (getChildren().contains(child)) {
       warn(null, "[type]", "Should not be adding this twice! in " + id() + ", trying to add " + child.id() + " with children: " + getChildren());
       return;
     }
 
+    if (this.children == null) {
+      this.children = new ArrayList<>(2);
+    }
     this.children.add(child);
+    this.selection = UNKEYED;
+  }
+
+  public void putProp(final String name, final Prop prop) {
+    checkNotFrozen();
+
+    if (this.props == null) {
+      this.props = new LinkedHashMap<>();
+    }
+    this.props.put(name, prop);
+    this.selection = UNKEYED;
+  }
+
+  public void putProps(final Map<String, Prop> props) {
+    for (final Map.Entry<String, Prop> entry : props.entrySet()) {
+      putProp(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /* the fields a selection is made from, in the order they are put */
+  protected void registerFields(final Context context, final String key, final Collection<String> candidates) {
+    this.fields = context.getFields().register(key, List.copyOf(candidates));
+    this.mask = new BitSet(fields.size());
+  }
+
+  /* puts a selected field, and marks it in the selection mask */
+  protected void putField(final String name, final Prop prop) {
+    putProp(name, prop);
+    if (mask == null) return;
+
+    final int index = fields.indexOf(name);
+    if (index < 0) {
+      // not one of the candidates, generate it without the mask
+      mask = null;
+      return;
+    }
+    mask.set(index);
+  }
+
+  /* the selected fields, in order: fixed lines are generated once per spec and reused after that */
+  protected void generateFields(final Context context, final Emitter writer) throws IOException {
+    if (mask == null || mask.cardinality() != getProps().size()) {
+      for (final Prop prop : getProps().values()) {
+        prop.generate(context, writer);
+      }
+      return;
+    }
+
+    for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+      final Prop prop = getProps().get(fields.getName(i));
+      if (!prop.isFixed()) {
+        prop.generate(context, writer);
+        continue;
+      }
+
+      String line = fields.getLine(i);
+      if (line == null) {
+        final Emitter buffer = new Emitter(64);
+        prop.generate(context, buffer);
+
+        line = buffer.toString();
+        fields.setLine(i, line);
+      }
+      writer.append(line);
+    }
+  }
+
+  /**
+   * Identifies what {@link #select(Context, Emitter)} writes for this node: nodes with the same key
+   * select the same fields at a given indentation, see {@link SelectionTable}. Computed once, and
+   * again when the node changes or more nodes have been visited since. Negative when the selection
+   * can't be shared.
+   */
+  public final int getSelectionKey(final Context context) {
+    final int version = context.getVersion();
+    final long memo = selection;
+    if (memo != UNKEYED && (int) (memo >>> 32) == version) return (int) memo;
+
+    final String signature = selectionSignature(context);
+    final int key = signature != null ? context.getSelections().intern(signature) : -1;
+
+    this.selection = ((long) version << 32) | (key & 0xffffffffL);
+    return key;
+  }
+
+  /* what the selection of this node is made of, null when it can't be shared */
+  protected String selectionSignature(final Context context) {
+    return null;
+  }
+
+  /* the selection keys of the nodes in order, null if one of them can't be shared */
+  protected static String selectionKeys(final Context context, final Collection<? extends Type> nodes) {
+    final StringBuilder builder = new StringBuilder();
+    for (final Type node : nodes) {
+      final int key = node.getSelectionKey(context);
+      if (key < 0) return null;
+
+      builder.append(key).append(',');
+    }
+    return builder.toString();
+  }
+
+  /* selects the props, unless another node with the same key was selected at this indentation */
+  protected void selectProps(final Context context, final Emitter writer) throws IOException {
+    final int key = getSelectionKey(context);
+    if (key < 0) {
+      for (final Prop prop : getProps().values()) {
+        prop.select(context, writer);
+      }
+      return;
+    }
+
+    final SelectionTable selections = context.getSelections();
+    final int indent = context.getStack().size();
+
+    final String fragment = selections.get(key, indent);
+    if (fragment != null) {
+      writer.append(fragment);
+      return;
+    }
+
+    final int start = writer.length();
+    final int cuts = context.getCuts();
+    for (final Prop prop : getProps().values()) {
+      prop.select(context, writer);
+    }
+
+    // a cut depends on what is on the stack, not only on the key
+    if (context.getCuts() == cuts) {
+      selections.put(key, indent, writer.substring(start));
+    }
   }
 
   public Type getParent() {
@@ -70,14 +245,62 @@ public abstract class Type implements Cloneable {
   }
 
   public Map<String, Prop> getProps() {
-    return props;
+    return props != null ? props : Collections.emptyMap();
   }
 
   public List<Type> getChildren() {
-    return children;
+    return children != null ? children : Collections.emptyList();
   }
 
-  public void generate(Context context, Writer writer) throws IOException {
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Makes this node, and every visited node below it, immutable so that it can be shared between
+   * threads without locking. Nodes that have not been visited yet are left mutable: visiting them
+   * must happen under the owner's lock, after which they can be frozen in turn.
+   */
+  public void freeze(final Context context) {
+    if (frozen || !context.isVisited(this)) return;
+
+    // a frozen node is never visited again, it no longer needs the swagger model
+    detach(context);
+
+    // names are computed lazily, do it now rather than on the readers' threads
+    getName();
+
+    if (children != null) {
+      children = List.copyOf(children);
+    }
+    if (props != null) {
+      props = Collections.unmodifiableMap(new LinkedHashMap<>(props));
+    }
+    frozen = true;
+
+    for (final Type child : getChildren()) {
+      child.freeze(context);
+    }
+    for (final Prop prop : getProps().values()) {
+      prop.freeze(context);
+    }
+  }
+
+  protected void checkNotFrozen() {
+    if (frozen) {
+      throw new IllegalStateException("Cannot modify frozen node " + id());
+    }
+  }
+
+  /**
+   * Drops the references this node keeps into the swagger model, copying whatever is still needed
+   * to generate it. Nodes that haven't been visited yet keep what they need to be visited.
+   */
+  public void detach(final Context context) {
+    // nothing to release by default
+  }
+
+  public void generate(Context context, Emitter writer) throws IOException {
     throw new IllegalStateException("Not yet implemented for " + getClass().getSimpleName());
   }
 
@@ -89,8 +312,8 @@ public abstract class Type implements Cloneable {
   public String toString() {
     return getClass().getSimpleName() + " {" +
       "name='" + name + '\'' +
-      ", children=" + children.size() +
-      ", props=" + props.size() +
+      ", children=" + getChildren().size() +
+      ", props=" + getProps().size() +
       '}';
   }
 
@@ -107,7 +330,7 @@ public abstract class Type implements Cloneable {
     return Objects.hash(name);
   }
 
-  public void select(final Context context, final Writer writer) throws IOException {
+  public void select(final Context context, final Emitter writer) throws IOException {
     throw new IllegalStateException("Not yet implemented for " + getClass().getSimpleName());
   }
 
@@ -116,7 +339,7 @@ public abstract class Type implements Cloneable {
   }
 
   public Set<Type> dependencies(final Context context) {
-    if (!isVisited()) {
+    if (!context.isVisited(this)) {
       visit(context);
     }
 
@@ -162,7 +385,7 @@ public abstract class Type implements Cloneable {
   protected String getOwner() {
     String owner = getSimpleName();
 
-    if (owner == null && getParent() instanceof Composed) {
+    if (owner == null && getParent() != null && getParent().kind() == Kind.COMPOSED) {
       owner = getParent().getSimpleName();
     }
 
@@ -182,6 +405,8 @@ public abstract class Type implements Cloneable {
     // search props
     if (found == null) {
       for (Type type : collection) {
+        if (!isSearchable(type)) continue;
+
         for (Type prop : type.getProps().values()) {
           if (prop.path().equals(path)) {
             found = prop;
@@ -194,6 +419,8 @@ public abstract class Type implements Cloneable {
     // search children
     if (found == null) {
       for (Type type : collection) {
+        if (!isSearchable(type)) continue;
+
         final List<Type> children = type.getChildren();
         found = findTypeIn(path, children);
         if (found != null) {
@@ -205,11 +432,16 @@ public abstract class Type implements Cloneable {
     return found;
   }
 
+  /* a mutable node under a frozen one may be being visited by another thread, and it has nothing
+   * to search until it is frozen in turn */
+  private static boolean isSearchable(final Type type) {
+    return type.isFrozen() || type.getParent() == null || !type.getParent().isFrozen();
+  }
+
   @Override
   public Type clone() {
     try {
       final Type clone = (Type) super.clone();
-      clone.setVisited(isVisited());
       clone.setName(getName());
       // TODO: copy mutable state here, so the clone can't change the internals of the original
       return clone;
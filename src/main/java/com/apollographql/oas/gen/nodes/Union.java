@@ -1,6 +1,7 @@
 package com.apollographql.oas.gen.nodes;
 
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.params.Param;
 import com.apollographql.oas.gen.nodes.props.Prop;
@@ -8,17 +9,17 @@ import com.apollographql.oas.gen.prompt.Prompt;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.*;
 
 import static com.apollographql.oas.gen.log.Trace.print;
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class Union extends Type {
-  private final List<Schema> schemas;
+public final class Union extends Type {
+  private List<Schema> schemas;
+  private List<String> refs;
 
   public Union(final Type parent, final String name, final List<Schema> schemas) {
-    super(parent, name);
+    super(parent, name, Kind.UNION);
     this.schemas = schemas;
   }
 
@@ -31,34 +32,46 @@ public class Union extends Type {
     return schemas;
   }
 
+  public List<String> getRefs() {
+    return schemas != null ? schemas.stream().map(Schema::get$ref).toList() : refs;
+  }
+
+  @Override
+  public void detach(final Context context) {
+    if (schemas == null || !context.isVisited(this)) return;
+
+    this.refs = getRefs();
+    this.schemas = null;
+  }
+
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [union]", "in: " + getSchemas().stream().map(Schema::get$ref).toList());
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [union]", () -> "in: " + getRefs());
 
-    if (!context.inContextOf(Composed.class, this))
+    if (!context.inContextOf(Kind.COMPOSED, this))
       print(null, "In union: " + getOwner());
 
     final Map<String, Prop> collected = new LinkedHashMap<>();
 
     for (final Schema<?> refSchema : getSchemas()) {
-      final Type type = Factory.fromSchema(this, refSchema);
-      trace(context, "union", "of type: " + type);
+      final Type type = Factory.fromSchema(context, this, refSchema);
+      trace(context, "union", () -> "of type: " + type);
 
       type.visit(context);
       collected.putAll(type.getProps());
     }
 
-    if (!context.inContextOf(Param.class, this))
+    if (!context.inContextOf(Kind.PARAM, this))
       visitProperties(context, collected);
 
     // store the union for generation
     if (getName() != null)
       context.store(getName(), this);
 
-    setVisited(true);
+    context.setVisited(this);
 
-    trace(context, "<- [union]", "out: " + getSchemas().stream().map(Schema::get$ref).toList());
+    trace(context, "<- [union]", () -> "out: " + getRefs());
     context.leave();
   }
 
@@ -76,10 +89,10 @@ public class Union extends Type {
     for (final Map.Entry<String, Prop> entry : collected.entrySet()) {
       final Prop prop = entry.getValue();
       if (addAll == 'y' || context.getPrompt().yesNo(prop.path(), "Add field '" + prop.forPrompt(context) + "'?")) {
-        trace(context, "   [union]", "prop: " + prop);
+        trace(context, "   [union]", () -> "prop: " + prop);
 
         // add property to our dependencies
-        getProps().put(prop.getName(), prop);
+        putProp(prop.getName(), prop);
 
         if (!this.getChildren().contains(prop)) {
           this.add(prop);
@@ -89,11 +102,11 @@ public class Union extends Type {
   }
 
   @Override
-  public void generate(Context context, Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [union::generate]", "in: " + getSchemas().stream().map(Schema::get$ref).toList());
+  public void generate(Context context, Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [union::generate]", () -> "in: " + getRefs());
 
-    if (context.inContextOf(Param.class, this)) {
+    if (context.inContextOf(Kind.PARAM, this)) {
       for (Type child : getChildren()) {
         child.generate(context, writer);
       }
@@ -106,7 +119,7 @@ public class Union extends Type {
       writer.append(String.join("# | ", getChildren().stream().map(Type::getName).toList()));
       writer.append("#\n\n");
 
-      trace(context, "   [union::generate]", String.format("[union] -> object: %s", this.getName()));
+      trace(context, "   [union::generate]", () -> String.format("[union] -> object: %s", this.getName()));
 
       writer.append("type ")
         .append(getSimpleName())
@@ -115,7 +128,7 @@ public class Union extends Type {
         .append("\n");
 
       for (Prop prop : this.getProps().values()) {
-        trace(context, "-> [union::generate]", String.format("-> property: %s (parent: %s)", prop.getName(), prop.getParent().getSimpleName()));
+        trace(context, "-> [union::generate]", () -> String.format("-> property: %s (parent: %s)", prop.getName(), prop.getParent().getSimpleName()));
         prop.generate(context, writer);
       }
 
@@ -124,7 +137,7 @@ public class Union extends Type {
         .append("\n\n");
     }
 
-    trace(context, "<- [union::generate]", "out: " + getSchemas().stream().map(Schema::get$ref).toList());
+    trace(context, "<- [union::generate]", () -> "out: " + getRefs());
     context.leave();
   }
 
@@ -134,9 +147,13 @@ public class Union extends Type {
   }
 
   @Override
-  public void select(final Context context, Writer writer) throws IOException {
-    for (Prop prop : this.getProps().values()) {
-      prop.select(context, writer);
-    }
+  public void select(final Context context, Emitter writer) throws IOException {
+    selectProps(context, writer);
+  }
+
+  @Override
+  protected String selectionSignature(final Context context) {
+    final String props = selectionKeys(context, getProps().values());
+    return props != null ? "union(" + props + ")" : null;
   }
 }
@@ -1,26 +1,26 @@
 package com.apollographql.oas.gen.nodes.params;
 
-import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
+import com.apollographql.oas.gen.nodes.Kind;
 import com.apollographql.oas.gen.nodes.Type;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class Param extends Type {
+public final class Param extends Type {
 
-  private final Schema schema;
+  private Schema schema;
   private final boolean required;
   private final Object defaultValue;
 
   private Type resultType;
 
   public Param(Type parent, String name, Schema schema, boolean required, Object defaultValue ) {
-    super(parent, name);
+    super(parent, name, Kind.PARAM);
     this.schema = schema;
     this.required = required;
     this.defaultValue = defaultValue;
@@ -48,23 +48,31 @@ public class Param extends Type {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [param]", "in: " + getName());
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [param]", () -> "in: " + getName());
 
-    this.resultType = Factory.fromSchema(this, getSchema());
-    trace(context, "   [param]", "type: " + resultType);
+    this.resultType = Factory.fromSchema(context, this, getSchema());
+    trace(context, "   [param]", () -> "type: " + resultType);
     this.resultType.visit(context);
+    context.setVisited(this);
 
-    trace(context, "<- [param]", "out: " + getName());
+    trace(context, "<- [param]", () -> "out: " + getName());
     context.leave();
   }
 
   @Override
-  public void generate(Context context, Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [param::generate]", String.format("-> in: %s", this.getSimpleName()));
+  public void detach(final Context context) {
+    if (resultType != null) {
+      this.schema = null;
+    }
+  }
+
+  @Override
+  public void generate(Context context, Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [param::generate]", () -> String.format("-> in: %s", this.getSimpleName()));
 
-    writer.write(NameUtils.genParamName(getName()));
+    writer.write(context.getNames().genParamName(getName()));
     writer.write(": ");
 
     getResultType().generate(context, writer);
@@ -77,11 +85,11 @@ public class Param extends Type {
       writeDefaultValue(writer);
     }
 
-    trace(context, "<- [param::generate]", String.format("-> out: %s", this.getSimpleName()));
+    trace(context, "<- [param::generate]", () -> String.format("-> out: %s", this.getSimpleName()));
     context.leave();
   }
 
-  private void writeDefaultValue(final Writer writer) throws IOException {
+  private void writeDefaultValue(final Emitter writer) throws IOException {
     writer.write(" = ");
     final Object value = getDefaultValue();
 
@@ -101,7 +109,7 @@ public class Param extends Type {
       "name=" + getName() +
       ", required=" + required +
       ", defaultValue=" + defaultValue +
-      ", props=" + props +
+      ", props=" + getProps() +
       ", resultType=" + resultType +
       '}';
   }
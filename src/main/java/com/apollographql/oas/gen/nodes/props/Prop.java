@@ -1,19 +1,21 @@
 package com.apollographql.oas.gen.nodes.props;
 
-import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
+import com.apollographql.oas.gen.nodes.Kind;
 import com.apollographql.oas.gen.nodes.Type;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.util.Collection;
 
-public abstract class Prop extends Type {
-  protected final Schema schema;
+public abstract sealed class Prop extends Type permits PropArray, PropObj, PropRef, PropScalar {
+  protected Schema schema;
   protected boolean required;
+  private String description;
 
-  public Prop(final Type parent, final String name, final Schema schema) {
-    super(parent, name);
+  public Prop(final Type parent, final String name, final Schema schema, final Kind kind) {
+    super(parent, name, kind);
     this.schema = schema;
   }
 
@@ -29,10 +31,36 @@ public abstract class Prop extends Type {
     return required;
   }
 
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(final String description) {
+    this.description = description;
+  }
+
   public abstract String getValue(Context context);
 
-  public void generate(Context context, Writer writer) throws IOException {
-    String description = this.getSchema().getDescription();
+  /* a line that only depends on the spec, not on which other types were selected or cut */
+  public boolean isFixed() {
+    return switch (kind()) {
+      case PROP_SCALAR -> true;
+      case PROP_ARRAY -> {
+        final Prop items = ((PropArray) this).getItems();
+        yield items != null && items.kind() == Kind.PROP_SCALAR;
+      }
+      default -> false;
+    };
+  }
+
+  @Override
+  public void detach(final Context context) {
+    // props are built from their parent's schema, only scalars need theirs when visited
+    this.schema = null;
+  }
+
+  public void generate(Context context, Emitter writer) throws IOException {
+    final String description = getDescription();
 
     if (description != null) {
       if (description.contains("\n") || description.contains("\r") || description.contains("\"")) {
@@ -44,7 +72,7 @@ public abstract class Prop extends Type {
     }
 
     writer.append("  ")
-      .append(NameUtils.sanitiseField(getName()))
+      .append(context.getNames().sanitiseField(getName()))
       .append(": ");
 
     generateValue(context, writer);
@@ -58,17 +86,17 @@ public abstract class Prop extends Type {
     writer.append("\n");
   }
 
-  protected void generateValue(final Context context, final Writer writer) throws IOException {
+  protected void generateValue(final Context context, final Emitter writer) throws IOException {
     writer.append(getValue(context));
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
+  public void select(final Context context, final Emitter writer) throws IOException {
 //    final String fieldName = getName().startsWith("@") ? getName().substring(1) : getName();
     final String fieldName = getName();
-    final String sanitised = NameUtils.sanitiseFieldForSelect(fieldName);
+    final String sanitised = context.getNames().sanitiseFieldForSelect(fieldName);
     writer
-      .append(" ".repeat(context.getStack().size()))
+      .indent(context.getStack().size())
       .append(sanitised)
       .append("\n");
 
@@ -76,4 +104,17 @@ public abstract class Prop extends Type {
       child.select(context, writer);
     }
   }
+
+  @Override
+  protected String selectionSignature(final Context context) {
+    return fieldSignature(context, false, getChildren());
+  }
+
+  /* the field's kind, whether it opens a block, the keys of what is selected in it, then its name */
+  protected String fieldSignature(final Context context, final boolean brackets, final Collection<? extends Type> selected) {
+    final String keys = selectionKeys(context, selected);
+    if (keys == null) return null;
+
+    return kind() + (brackets ? "{" : "") + "(" + keys + ")" + getName();
+  }
 }
@@ -1,23 +1,23 @@
 package com.apollographql.oas.gen.nodes.props;
 
-import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
+import com.apollographql.oas.gen.nodes.Kind;
 import com.apollographql.oas.gen.nodes.Type;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class PropArray extends Prop {
+public final class PropArray extends Prop {
   private Prop items;
 
   public PropArray(Type parent, String name, Schema schema) {
-    super(parent, name, schema);
+    super(parent, name, schema, Kind.PROP_ARRAY);
   }
 
   @Override
@@ -38,25 +38,28 @@ public class PropArray extends Prop {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
+    context.enter(this, Context.Activity.VISIT);
     trace(context, "-> [prop-array]", "in");
 
-    trace(context, "   [array]", "type: " + getItems());
+    trace(context, "   [array]", () -> "type: " + getItems());
     getItems().visit(context);
-    setVisited(true);
+    context.setVisited(this);
 
     trace(context, "<- [array]", "out");
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
+  public void select(final Context context, final Emitter writer) throws IOException {
+    // an array of a recursion cut, there is nothing to select
+    if (isCut(context)) return;
+
 //    final String fieldName = getName().startsWith("@") ? getName().substring(1) : getName();
     final String fieldName = getName();
-    final String sanitised = NameUtils.sanitiseFieldForSelect(fieldName);
+    final String sanitised = context.getNames().sanitiseFieldForSelect(fieldName);
 
     writer
-      .append(" ".repeat(context.getStack().size()))
+      .indent(context.getStack().size())
       .append(sanitised);
 
     if (needsBrackets(getItems())) {
@@ -72,14 +75,14 @@ public class PropArray extends Prop {
 
     if (needsBrackets(getItems())) {
       writer
-        .append(" ".repeat(context.getStack().size()))
+        .indent(context.getStack().size())
         .append("}");
     }
     writer.append("\n");
   }
 
   public Set<Type> dependencies(final Context context) {
-    if (!isVisited()) {
+    if (!context.isVisited(this)) {
       this.visit(context);
     }
 
@@ -111,8 +114,23 @@ public class PropArray extends Prop {
     return "[" + getItems().getValue(context) + "]";
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    if (isCut(context)) return "cut";
+    return fieldSignature(context, needsBrackets(getItems()), getItems().getChildren());
+  }
+
+  private boolean isCut(final Context context) {
+    return getItems() != null && getItems().kind() == Kind.PROP_REF && ((PropRef) getItems()).isCut(context);
+  }
+
   private boolean needsBrackets(Type child) {
-    return child instanceof PropRef || child instanceof PropObj;
+    if (child == null) return false;
+
+    return switch (child.kind()) {
+      case PROP_REF, PROP_OBJ -> true;
+      default -> false;
+    };
   }
 
   @Override
@@ -2,21 +2,21 @@ package com.apollographql.oas.gen.nodes.props;
 
 import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.nodes.*;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.Objects;
 import java.util.Set;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class PropObj extends Prop implements Cloneable {
+public final class PropObj extends Prop implements Cloneable {
   private final Type obj;
 
   public PropObj(final Type parent, final Schema schema, final Type obj) {
-    super(parent, null, schema);
+    super(parent, null, schema, Kind.PROP_OBJ);
     this.obj = obj;
   }
 
@@ -60,49 +60,49 @@ public class PropObj extends Prop implements Cloneable {
   }
 
   @Override
-  public void generate(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
-    trace(context, "-> [prop:obj::generate]", String.format("-> in: %s", this.getName()));
+  public void generate(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.GENERATE);
+    trace(context, "-> [prop:obj::generate]", () -> String.format("-> in: %s", this.getName()));
 
     writer.append("type ")
       .append(NameUtils.getRefName(getName()))
       .append(" {\n");
 
     for (Prop prop : this.getProps().values()) {
-      trace(context, "-> [prop:obj::generate]", String.format("-> property: %s (parent: %s)", prop.getName(), prop.getParent().getSimpleName()));
+      trace(context, "-> [prop:obj::generate]", () -> String.format("-> property: %s (parent: %s)", prop.getName(), prop.getParent().getSimpleName()));
       prop.generate(context, writer);
     }
 
     writer.append("}\n\n");
 
-    trace(context, "<- [prop:obj::generate]", String.format("-> out: %s", this.getName()));
+    trace(context, "<- [prop:obj::generate]", () -> String.format("-> out: %s", this.getName()));
     context.leave();
   }
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [prop-obj]", "in " + getName() + ", obj: " + getObj().getSimpleName());
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [prop-obj]", () -> "in " + getName() + ", obj: " + getObj().getSimpleName());
 
     getObj().visit(context);
     if (!this.getChildren().contains(getObj())) {
       this.add(getObj());
     }
 
-    setVisited(true);
+    context.setVisited(this);
 
-    trace(context, "<- [prop-obj]", "out " + getName() + ", obj: " + getObj().getSimpleName());
+    trace(context, "<- [prop-obj]", () -> "out " + getName() + ", obj: " + getObj().getSimpleName());
     context.leave();
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
-    context.enter(this);
+  public void select(final Context context, final Emitter writer) throws IOException {
+    context.enter(this, Context.Activity.SELECT);
     final String fieldName = getName();
-    final String sanitised = NameUtils.sanitiseFieldForSelect(fieldName);
+    final String sanitised = context.getNames().sanitiseFieldForSelect(fieldName);
 
     writer
-      .append(" ".repeat(context.getStack().size()))
+      .indent(context.getStack().size())
       .append(sanitised);
 
     if (needsBrackets(getObj())) {
@@ -116,7 +116,7 @@ public class PropObj extends Prop implements Cloneable {
 
     if (needsBrackets(getObj())) {
       writer
-        .append(" ".repeat(context.getStack().size()))
+        .indent(context.getStack().size())
         .append("}");
 
       writer.append("\n");
@@ -124,8 +124,13 @@ public class PropObj extends Prop implements Cloneable {
     context.leave();
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    return fieldSignature(context, needsBrackets(getObj()), getChildren());
+  }
+
   private boolean needsBrackets(Type child) {
-    return child instanceof Obj || child instanceof Union || child instanceof Composed;
+    return child != null && child.kind().isComposite();
   }
 
   public String forPrompt(final Context context) {
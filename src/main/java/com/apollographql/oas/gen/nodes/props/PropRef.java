@@ -2,12 +2,12 @@ package com.apollographql.oas.gen.nodes.props;
 
 import com.apollographql.oas.converter.utils.NameUtils;
 import com.apollographql.oas.gen.context.Context;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.factory.Factory;
 import com.apollographql.oas.gen.nodes.*;
 import io.swagger.v3.oas.models.media.Schema;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -15,12 +15,12 @@ import java.util.stream.Collectors;
 
 import static com.apollographql.oas.gen.log.Trace.trace;
 
-public class PropRef extends Prop implements Cloneable {
+public final class PropRef extends Prop implements Cloneable {
   private final String ref;
   private Type refType;
 
   public PropRef(Type parent, String name, Schema schema, String ref) {
-    super(parent, name, schema);
+    super(parent, name, schema, Kind.PROP_REF);
     this.ref = ref;
   }
 
@@ -37,6 +37,11 @@ public class PropRef extends Prop implements Cloneable {
     return refType;
   }
 
+  /* visited, but not followed as it would expand a recursive component once more, see Context#isRecursionCut */
+  public boolean isCut(final Context context) {
+    return getRefType() == null && context.isVisited(this);
+  }
+
   @Override
   public String getValue(Context context) {
     final Type type = getRefType();
@@ -50,13 +55,19 @@ public class PropRef extends Prop implements Cloneable {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
-    trace(context, "-> [prop-ref]", "in " + getName() + ", ref: " + getRef());
+    if (context.isRecursionCut(getRef())) {
+      trace(context, "   [prop-ref]", () -> "recursion cut " + getName() + ", ref: " + getRef());
+      context.setVisited(this);
+      return;
+    }
+
+    context.enter(this, Context.Activity.VISIT);
+    trace(context, "-> [prop-ref]", () -> "in " + getName() + ", ref: " + getRef());
 
     final Schema schema = context.lookupRef(getRef());
     assert schema != null;
 
-    final Type type = Factory.fromSchema(this, schema);
+    final Type type = Factory.fromSchema(context, this, schema);
     this.refType = type;
 
     type.setName(getRef());
@@ -66,37 +77,39 @@ public class PropRef extends Prop implements Cloneable {
       this.add(getRefType());
     }
 
-    setVisited(true);
+    context.setVisited(this);
 
-    trace(context, "<- [prop-ref]", "out " + getName() + ", ref: " + getRef());
+    trace(context, "<- [prop-ref]", () -> "out " + getName() + ", ref: " + getRef());
     context.leave();
   }
 
   /* Unfortunately we cannot delegate this to the subtype, otherwise the entire type would
   * be generated. Therefore we only have the option to generate it ourselves  */
-  protected void generateValue(final Context context, final Writer writer) throws IOException {
+  protected void generateValue(final Context context, final Emitter writer) throws IOException {
     final Type type = getRefType();
-    if (type != null) {
-      if (type instanceof Array) {
-        writer.append("[");
-        Type items = ((Array) type).getItemsType();
-        writer.append(items.getName());
-        writer.append("]");
-      }
+    if (type != null && type.kind() == Kind.ARRAY) {
+      writer.append("[");
+      Type items = ((Array) type).getItemsType();
+      writer.append(items.getName());
+      writer.append("]");
     }
-    else {
+    else if (type == null || type.kind().isComposite()) {
+      // expanded or not, e.g. cut by recursion, the field is of the ref's type
       writer.append(getValue(context));
     }
   }
 
   @Override
-  public void select(final Context context, final Writer writer) throws IOException {
+  public void select(final Context context, final Emitter writer) throws IOException {
+    // a recursion cut, there is nothing to select
+    if (isCut(context)) return;
+
 //    final String fieldName = getName().startsWith("@") ? getName().substring(1) : getName();
     final String fieldName = getName();
-    final String sanitised = NameUtils.sanitiseFieldForSelect(fieldName);
+    final String sanitised = context.getNames().sanitiseFieldForSelect(fieldName);
 
     writer
-      .append(" ".repeat(context.getStack().size()))
+      .indent(context.getStack().size())
       .append(sanitised);
 
     if (needsBrackets(getRefType())) {
@@ -110,20 +123,26 @@ public class PropRef extends Prop implements Cloneable {
 
     if (needsBrackets(getRefType())) {
       writer
-        .append(" ".repeat(context.getStack().size()))
+        .indent(context.getStack().size())
         .append("}");
 
       writer.append("\n");
     }
   }
 
+  @Override
+  protected String selectionSignature(final Context context) {
+    // a recursion cut selects nothing
+    if (isCut(context)) return "cut";
+    return fieldSignature(context, needsBrackets(getRefType()), getChildren());
+  }
+
   private boolean needsBrackets(Type child) {
-    if (child instanceof Array) {
-      final Array array = (Array) child;
-      return needsBrackets(array.getItemsType());
+    while (child != null && child.kind() == Kind.ARRAY) {
+      child = ((Array) child).getItemsType();
     }
 
-    return child instanceof Obj || child instanceof Union || child instanceof Composed;
+    return child != null && child.kind().isComposite();
   }
 
   public String forPrompt(final Context context) {
@@ -2,6 +2,7 @@ package com.apollographql.oas.gen.nodes.props;
 
 import com.apollographql.oas.gen.context.Context;
 import com.apollographql.oas.gen.factory.Factory;
+import com.apollographql.oas.gen.nodes.Kind;
 import com.apollographql.oas.gen.nodes.Type;
 import io.swagger.v3.oas.models.media.Schema;
 
@@ -10,12 +11,12 @@ import java.io.Writer;
 import java.util.Collections;
 import java.util.Set;
 
-public class PropScalar extends Prop {
+public final class PropScalar extends Prop {
   protected final String type;
   private Type propType;
 
   public PropScalar(final Type parent, final String name, final String type, final Schema schema) {
-    super(parent, name, schema);
+    super(parent, name, schema, Kind.PROP_SCALAR);
     this.type = type;
   }
 
@@ -26,13 +27,13 @@ public class PropScalar extends Prop {
 
   @Override
   public void visit(final Context context) {
-    context.enter(this);
+    context.enter(this, Context.Activity.VISIT);
 //    trace(context, "-> [prop-scalar]", "in " + getName() + ", type: " + getType());
 
-    if (this.propType == null) {
-      this.propType = Factory.fromSchema(this, getSchema());
+    if (this.propType == null && getSchema() != null) {
+      this.propType = Factory.fromSchema(context, this, getSchema());
       this.propType.visit(context);
-      setVisited(true);
+      context.setVisited(this);
     }
 
 //    trace(context, "<- [prop-scalar]", "out " + getName() + ", type: " + getType());
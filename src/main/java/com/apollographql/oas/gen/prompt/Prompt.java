@@ -1,13 +1,19 @@
 package com.apollographql.oas.gen.prompt;
 
+import com.apollographql.oas.gen.log.Trace;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
 
+import static com.apollographql.oas.gen.log.Trace.trace;
+
 public class Prompt {
   private Input input;
 
+  /* questions asked, answered from the console or a recording */
+  private int calls;
+
   private Prompt(Input input) {
     this.input = input;
   }
@@ -25,23 +31,32 @@ public class Prompt {
   }
 
   public boolean yesNo(final String id, final String msg) {
+    calls++;
     return getInput().yesNo(id, msg);
   }
 
   public char yesNoSelect(final String id, final String msg) {
+    calls++;
     return getInput().yesNoSelect(id, msg);
   }
 
+  public int getCalls() {
+    return calls;
+  }
+
+  /* the prompts are written as they are asked, after what was printed before */
   public static class ConsoleInput implements Input {
     final protected Scanner scanner = new Scanner(System.in);
 
     public boolean yesNo(final String id, final String prompt) {
+      Trace.flush();
       System.out.println(prompt + " 'y': Yes, 'n': No");
       final String next = scanner.nextLine();
       return next.equals("") || next.equalsIgnoreCase("y");
     }
 
     public char yesNoSelect(final String id, final String prompt) {
+      Trace.flush();
       System.out.println(prompt + " 'y': Yes, 'n': Skip, 's': Select");
       final String next = scanner.nextLine();
 
@@ -63,14 +78,14 @@ public class Prompt {
     public boolean yesNo(final String id, final String prompt) {
       final String next = record[track++].substring(1, 2);
       final boolean response = next.equalsIgnoreCase("y");
-      System.out.println(prompt + " 'y': Yes, 'n': No" + " -> " + next + ", response? " + response);
+      trace(null, "[prompt::player]", () -> prompt + " 'y': Yes, 'n': No" + " -> " + next + ", response? " + response);
       return response;
     }
 
     @Override
     public char yesNoSelect(final String id, final String prompt) {
       final String next = record[track++].substring(1, 2);
-      System.out.println(prompt + " 'y': Yes, 'n': Skip, 's': Select" + " -> " + next);
+      trace(null, "[prompt::player]", () -> prompt + " 'y': Yes, 'n': Skip, 's': Select" + " -> " + next);
       if (next.equalsIgnoreCase("y")) return 'y';
       else if (next.equalsIgnoreCase("s")) return 's';
       else return 'n';
@@ -94,7 +109,7 @@ public class Prompt {
       }
 
       final boolean response = next.equalsIgnoreCase("y");
-      System.out.println("[" + id + "]: " + prompt + " 'y': Yes, 'n': No" + " -> " + next + ", response? " + response);
+      trace(null, "[prompt::mapPlayer]", () -> "[" + id + "]: " + prompt + " 'y': Yes, 'n': No" + " -> " + next + ", response? " + response);
       return response;
     }
 
@@ -105,7 +120,7 @@ public class Prompt {
         throw new IllegalArgumentException("Could not find response for '" + id + "'");
       }
 
-      System.out.println("[" + id + "]: " + prompt + " 'y': Yes, 'n': Skip, 's': Select" + " -> " + next);
+      trace(null, "[prompt::mapPlayer]", () -> "[" + id + "]: " + prompt + " 'y': Yes, 'n': Skip, 's': Select" + " -> " + next);
       if (next.equalsIgnoreCase("y")) return 'y';
       else if (next.equalsIgnoreCase("s")) return 's';
       else return 'n';
@@ -117,6 +132,7 @@ public class Prompt {
 
     @Override
     public boolean yesNo(final String id, final String prompt) {
+      Trace.flush();
       System.out.println(prompt + " 'y': Yes, 'n': No");
       final String answer = scanner.nextLine();
       records.add(new ImmutablePair<>(answer, prompt.replaceAll("\\n", "")));
@@ -125,6 +141,7 @@ public class Prompt {
 
     @Override
     public char yesNoSelect(final String id, final String prompt) {
+      Trace.flush();
       System.out.println(prompt + " 'y': Yes, 'n': Skip, 's': Select");
       final String answer = scanner.nextLine();
       records.add(new ImmutablePair<>(answer, prompt.replaceAll("\\n", "")));
@@ -145,6 +162,7 @@ public class Prompt {
     @Override
     public boolean yesNo(final String id, final String prompt) {
 //      System.out.println(prompt + " 'y': Yes, 'n': No");
+      Trace.flush();
       System.out.println("[" + id + "]: \n" + prompt + " 'y': Yes, 'n': No");
       final String answer = scanner.nextLine();
       records.add(new ImmutablePair<>(id, answer));
@@ -154,6 +172,7 @@ public class Prompt {
     @Override
     public char yesNoSelect(final String id, final String prompt) {
 //      System.out.println(prompt + " 'y': Yes, 'n': Skip, 's': Select");
+      Trace.flush();
       System.out.println("[" + id + "]: \n" + prompt + " 'y': Yes, 'n': Skip, 's': Select");
       final String answer = scanner.nextLine();
       records.add(new ImmutablePair<>(id, answer));
@@ -0,0 +1,90 @@
+package com.apollographql.oas.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Profiles the running server with Flight Recorder, without restarting it. Off unless
+ * {@code admin.recording.enabled=true}, and then only answers tools on the server's own host:
+ * requests from another address, or sent by a browser (with an {@code Origin}), are forbidden.
+ */
+@RestController
+@RequestMapping("/admin/recording")
+@ConditionalOnProperty(prefix = "admin.recording", name = "enabled")
+public class AdminController {
+  private final RecordingService recordingService;
+
+  @Autowired
+  public AdminController(RecordingService recordingService) {
+    this.recordingService = recordingService;
+  }
+
+  @ModelAttribute
+  public void requireLocal(HttpServletRequest request) {
+    if (request.getHeader(HttpHeaders.ORIGIN) != null || !isLoopback(request.getRemoteAddr())) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Recordings are only available from the server's host");
+    }
+  }
+
+  @GetMapping
+  public Map<String, Object> status() {
+    return recordingService.status();
+  }
+
+  /* records the generator's events lasting at least the threshold, for at most the duration if given */
+  @PostMapping("/start")
+  public Map<String, Object> start(@RequestParam(value = "threshold", defaultValue = "1") long thresholdMillis,
+                                   @RequestParam(value = "duration", required = false) Long durationSeconds) {
+    return recordingService.start(Duration.ofMillis(thresholdMillis),
+      durationSeconds != null ? Duration.ofSeconds(durationSeconds) : null);
+  }
+
+  /* the .jfr file, e.g. for JDK Mission Control or 'jfr print' */
+  @PostMapping("/stop")
+  public ResponseEntity<StreamingResponseBody> stop() throws IOException {
+    final Path file = recordingService.stop();
+    final String name = "oas-generator-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr";
+
+    return ResponseEntity.ok()
+      .contentType(MediaType.APPLICATION_OCTET_STREAM)
+      .contentLength(Files.size(file))
+      .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(name).build().toString())
+      .body(out -> {
+        try {
+          Files.copy(file, out);
+        }
+        finally {
+          Files.deleteIfExists(file);
+        }
+      });
+  }
+
+  private static boolean isLoopback(final String address) {
+    try {
+      // a literal address, never resolved
+      return address != null && InetAddress.getByName(address).isLoopbackAddress();
+    }
+    catch (UnknownHostException e) {
+      return false;
+    }
+  }
+}
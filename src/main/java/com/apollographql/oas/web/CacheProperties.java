@@ -0,0 +1,48 @@
+package com.apollographql.oas.web;
+
+import com.apollographql.oas.gen.cache.OutputCache;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties("cache")
+public class CacheProperties {
+
+  /**
+   * How many generated schemas are kept in memory
+   */
+  private int capacity = OutputCache.DEFAULT_CAPACITY;
+
+  /**
+   * How many compressed bytes are kept in memory
+   */
+  private long maxBytes = OutputCache.DEFAULT_MAX_BYTES;
+
+  /**
+   * Folder generated schemas are also kept in, none if empty
+   */
+  private String location = "";
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void setCapacity(int capacity) {
+    this.capacity = capacity;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public String getLocation() {
+    return location;
+  }
+
+  public void setLocation(String location) {
+    this.location = location;
+  }
+
+}
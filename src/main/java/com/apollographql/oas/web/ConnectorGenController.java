@@ -1,36 +1,46 @@
 package com.apollographql.oas.web;
 
+import com.apollographql.oas.gen.GenerationSession;
 import com.apollographql.oas.gen.WebGenerator;
+import com.apollographql.oas.gen.cache.OutputCache;
+import com.apollographql.oas.gen.context.Explanation;
 import com.apollographql.oas.gen.nodes.Composed;
 import com.apollographql.oas.gen.nodes.GetOp;
 import com.apollographql.oas.gen.nodes.Type;
 import com.apollographql.oas.gen.nodes.props.Prop;
 import com.apollographql.oas.gen.nodes.props.PropScalar;
 import com.apollographql.oas.gen.prompt.Input;
-import com.apollographql.oas.gen.prompt.Prompt;
 import com.apollographql.oas.web.storage.StorageService;
 import jakarta.websocket.server.PathParam;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
-import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.apollographql.oas.gen.log.Trace.trace;
+
 @RestController
 public class ConnectorGenController {
   private final StorageService storageService;
   private final GeneratorService generatorService;
+  private final GeneratorMetrics metrics;
 
   @Autowired
-  public ConnectorGenController(StorageService storage, GeneratorService generatorService) {
+  public ConnectorGenController(StorageService storage, GeneratorService generatorService, GeneratorMetrics metrics) {
     this.storageService = storage;
     this.generatorService = generatorService;
+    this.metrics = metrics;
   }
 
   @GetMapping("/hello")
@@ -60,7 +70,7 @@ public class ConnectorGenController {
   @GetMapping("/visit/{md5}/path")
   public Map<String, Object> visitPath(@PathVariable String md5, @PathParam("id") String id) throws IOException {
     final WebGenerator generator = this.generatorService.get(md5);
-    System.out.println("ConnectorGenController.visitPath for " + md5 + ", path: " + id);
+    trace(null, "[web::visitPath]", () -> md5 + ", path: " + id);
 
     final GetOp result = generator.getPathResult(id);
 
@@ -79,7 +89,7 @@ public class ConnectorGenController {
     );
 
 //      collectTypes(result, collected);
-    System.out.println("collected = " + collected);
+    trace(null, "[web::visitPath]", () -> "collected = " + collected);
     return collected;
   }
 
@@ -87,7 +97,7 @@ public class ConnectorGenController {
   public Map<String, Object> visitType(@PathVariable String md5, @RequestParam("id") String path, @RequestParam("p") String parent) throws IOException {
     final WebGenerator generator = this.generatorService.get(md5);
 
-    System.out.println("ConnectorGenController.visitType [in]\n" + path);
+    trace(null, "[web::visitType]", () -> "[in]\n" + path);
 
     final Type found = generator.find(path);
 
@@ -110,7 +120,7 @@ public class ConnectorGenController {
         "value", t.forPrompt(generator.getContext())
       )));
 
-      System.out.println("ConnectorGenController.visitType [out] \n" + result);
+      trace(null, "[web::visitType]", () -> "[out] \n" + result);
       return result;
     }
     else {
@@ -121,25 +131,80 @@ public class ConnectorGenController {
   @PostMapping("/visit/{md5}/generate")
   public Map<String, String> generate(@PathVariable String md5, @RequestBody Map<String, String> items) throws IOException {
     final Map<String, String> records = items;
-    System.out.println("records = " + records);
+    trace(null, "[web::generate]", () -> "records = " + records);
 
-    final WebGenerator generator = this.generatorService.get(md5);
+    // the same spec generated with the same answers before is served as it was
+    final OutputCache.Entry generated = this.generatorService.generate(md5, records);
+    return Map.of("result", generated.getSchema());
+  }
 
-    final StringWriter writer = new StringWriter();
-    generator.writeSchema(writer, Prompt.create(Prompt.Factory.mapPlayer(records)));
+  /* what each operation costs to generate from the answers, the most expensive first */
+  @PostMapping("/visit/{md5}/explain")
+  public Map<String, Object> explain(@PathVariable String md5, @RequestBody Map<String, String> items) throws IOException {
+    final Explanation explanation = this.generatorService.explain(md5, items);
+    return Map.of("operations", explanation.toList(), "unattributed", explanation.getUnattributed().toMap());
+  }
+
+  /* writes the schema into the response as it is generated, gzipped when the client accepts it */
+  @PostMapping("/visit/{md5}/generate/stream")
+  public ResponseEntity<StreamingResponseBody> generateStream(@PathVariable String md5, @RequestBody Map<String, String> items,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String encoding) {
+    if (this.generatorService.get(md5) == null) {
+      throw new IllegalArgumentException("No spec uploaded for " + md5);
+    }
 
-    return Map.of("result", writer.toString());
+    final boolean gzip = encoding != null && encoding.contains("gzip");
+    final ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+      .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+      .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+
+    // written on another thread, after this one has returned
+    final String endpoint = metrics.getEndpoint();
+    return response.body(out -> metrics.within(endpoint, () -> this.generatorService.stream(md5, items, out, gzip)));
+  }
+
+  /* generates the whole schema from every answer, and keeps it for later deltas */
+  @PostMapping("/visit/{md5}/session")
+  public Map<String, Object> generateSession(@PathVariable String md5, @RequestBody Map<String, String> items) throws IOException {
+    final GenerationSession session = this.generatorService.session(md5);
+    return toResponse(session.generate(items));
+  }
+
+  /* applies the changed answers, a null answer removes it, and tells which blocks they changed */
+  @PatchMapping("/visit/{md5}/session")
+  public Map<String, Object> patchSession(@PathVariable String md5, @RequestBody Map<String, String> delta) throws IOException {
+    trace(null, "[web::patchSession]", () -> "delta = " + delta);
+
+    final GenerationSession session = this.generatorService.session(md5);
+    return toResponse(session.apply(delta));
+  }
+
+  private static Map<String, Object> toResponse(final GenerationSession.Result result) {
+    return Map.of("result", result.getSchema(), "changed", result.getChanged());
+  }
+
+  @DeleteMapping("/visit/{md5}")
+  public Map<String, Object> evict(@PathVariable String md5) {
+    return Map.of("md5", md5, "evicted", generatorService.evict(md5));
   }
 
   @PostMapping("/upload")
   public Map<String, Object> handleFileUpload(@RequestParam("file") MultipartFile file) throws IOException {
-    final Path destination = storageService.store(file);
     final String fileName = file.getOriginalFilename();
+    final String md5 = DigestUtils.md5Hex(fileName).toUpperCase();
+
+    final long start = System.nanoTime();
+    final Path destination = storageService.store(file);
+    metrics.record("store", md5, System.nanoTime() - start);
+
     final List<String> paths = generatorService.parse(fileName, destination);
 
     final Map<String, Object> response = new LinkedHashMap<>();
     response.put("filename", fileName);
-    response.put("md5", DigestUtils.md5Hex(fileName).toUpperCase());
+    response.put("md5", md5);
     response.put("paths", paths);
 
     return response;
@@ -0,0 +1,140 @@
+package com.apollographql.oas.web;
+
+import com.apollographql.oas.gen.PhaseListener;
+import com.apollographql.oas.gen.WebGenerator;
+import com.apollographql.oas.gen.cache.OutputCache;
+import com.apollographql.oas.gen.context.StringTable;
+import io.micrometer.core.instrument.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The metrics of the web API, at {@code /actuator/metrics} and {@code /actuator/prometheus}:
+ * <ul>
+ *   <li>{@code oas.phase}, a timer of each phase (see {@link PhaseListener.Phase}, and {@code store}
+ *   for uploads) tagged by spec and by the endpoint it was called from,</li>
+ *   <li>{@code oas.generators.cached}, the specs uploaded, and for each spec {@code oas.spec.nodes},
+ *   {@code oas.spec.heap} (an estimate, in bytes), {@code oas.spec.strings.saved} (an estimate, in
+ *   bytes), {@code oas.spec.evictions} and {@code oas.spec.rebuilds},</li>
+ *   <li>{@code oas.cache.requests}, the generated schemas served from memory, disk or generated.</li>
+ * </ul>
+ * The endpoint is the pattern of the request being handled, set by this interceptor on the
+ * request's thread.
+ */
+@Component
+public class GeneratorMetrics implements AsyncHandlerInterceptor {
+  public static final String PHASE = "oas.phase";
+  public static final String SPEC = "spec";
+  public static final String ENDPOINT = "endpoint";
+  public static final String NONE = "none";
+
+  private final MeterRegistry registry;
+  private final ThreadLocal<String> endpoint = new ThreadLocal<>();
+
+  @Autowired
+  public GeneratorMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /* the phases of a spec's generator, timed */
+  public PhaseListener listener(final String md5) {
+    return (phase, nanos) -> record(phase.name().toLowerCase(), md5, nanos);
+  }
+
+  public void record(final String phase, final String md5, final long nanos) {
+    Timer.builder(PHASE)
+      .description("Time spent in each phase of generating from a spec")
+      .tag("phase", phase)
+      .tag(SPEC, md5)
+      .tag(ENDPOINT, getEndpoint())
+      .register(registry)
+      .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void watch(final Map<String, WebGenerator> generators, final OutputCache cache) {
+    Gauge.builder("oas.generators.cached", generators, Map::size)
+      .description("Specs uploaded, and their generators held")
+      .register(registry);
+
+    FunctionCounter.builder("oas.cache.requests", cache, OutputCache::getHits)
+      .description("Generated schemas asked for").tag("result", "hit").register(registry);
+    FunctionCounter.builder("oas.cache.requests", cache, OutputCache::getDiskHits)
+      .description("Generated schemas asked for").tag("result", "disk").register(registry);
+    FunctionCounter.builder("oas.cache.requests", cache, OutputCache::getMisses)
+      .description("Generated schemas asked for").tag("result", "miss").register(registry);
+  }
+
+  /* the gauges of a spec, until it is forgotten */
+  public void watch(final String md5, final WebGenerator generator) {
+    Gauge.builder("oas.spec.nodes", generator, WebGenerator::getNodeCount)
+      .description("Nodes of the operations expanded")
+      .tag(SPEC, md5).register(registry);
+    Gauge.builder("oas.spec.heap", generator, WebGenerator::getEstimatedBytes)
+      .description("Estimated heap held for the spec").baseUnit("bytes")
+      .tag(SPEC, md5).register(registry);
+    Gauge.builder("oas.spec.strings.saved", generator.getStrings(), StringTable::getBytesSaved)
+      .description("Estimated heap not allocated for duplicated strings").baseUnit("bytes")
+      .tag(SPEC, md5).register(registry);
+    FunctionCounter.builder("oas.spec.evictions", generator, WebGenerator::getEvictions)
+      .description("Operations reclaimed by the collector")
+      .tag(SPEC, md5).register(registry);
+    FunctionCounter.builder("oas.spec.rebuilds", generator, WebGenerator::getRebuilds)
+      .description("Operations expanded again once reclaimed")
+      .tag(SPEC, md5).register(registry);
+  }
+
+  /* removes every meter of the spec, e.g. once evicted */
+  public void forget(final String md5) {
+    registry.getMeters().stream()
+      .filter(meter -> md5.equals(meter.getId().getTag(SPEC)))
+      .forEach(registry::remove);
+  }
+
+  /* the endpoint of the request handled on this thread */
+  public String getEndpoint() {
+    final String current = endpoint.get();
+    return current != null ? current : NONE;
+  }
+
+  /* runs the call as if from the endpoint, e.g. a response written on another thread */
+  public void within(final String endpoint, final Call call) throws IOException {
+    final String previous = this.endpoint.get();
+    this.endpoint.set(endpoint);
+    try {
+      call.run();
+    }
+    finally {
+      if (previous != null) this.endpoint.set(previous);
+      else this.endpoint.remove();
+    }
+  }
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    final Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    endpoint.set(request.getMethod() + " " + (pattern != null ? pattern : NONE));
+    return true;
+  }
+
+  @Override
+  public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+    endpoint.remove();
+  }
+
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+    endpoint.remove();
+  }
+
+  public interface Call {
+    void run() throws IOException;
+  }
+}
@@ -1,15 +1,30 @@
 package com.apollographql.oas.web;
 
+import com.apollographql.oas.gen.GenerationSession;
 import com.apollographql.oas.gen.WebGenerator;
+import com.apollographql.oas.gen.cache.OutputCache;
+import com.apollographql.oas.gen.context.Explanation;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 public interface GeneratorService {
   void init();
 
   public WebGenerator get(final String md5);
 
+  public GenerationSession session(final String md5) throws IOException;
+
+  public OutputCache.Entry generate(final String md5, final Map<String, String> answers) throws IOException;
+
+  public Explanation explain(final String md5, final Map<String, String> answers) throws IOException;
+
+  public void stream(final String md5, final Map<String, String> answers, final OutputStream out, final boolean gzip) throws IOException;
+
   public List<String> parse(final String fileName, final Path file) throws IOException;
+
+  public boolean evict(final String md5);
 }
@@ -1,37 +1,174 @@
 package com.apollographql.oas.web;
 
+import com.apollographql.oas.gen.GenerationSession;
+import com.apollographql.oas.gen.PhaseListener;
 import com.apollographql.oas.gen.WebGenerator;
+import com.apollographql.oas.gen.cache.OutputCache;
+import com.apollographql.oas.gen.context.Explanation;
+import com.apollographql.oas.gen.emit.Emitter;
 import com.apollographql.oas.gen.prompt.Prompt;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.output.TeeOutputStream;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.nio.file.Path;
-import java.util.LinkedHashMap;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static com.apollographql.oas.gen.log.Trace.print;
 
 @Service
 public class GeneratorServiceImpl implements GeneratorService {
-  private Map<String, WebGenerator> map = new LinkedHashMap<>();
+  /* what a streamed schema buffers before it is spilled into the response */
+  private static final int STREAM_CAPACITY = 16 * 1024;
+
+  private final Map<String, WebGenerator> map = new ConcurrentHashMap<>();
+  private final Map<String, GenerationSession> sessions = new ConcurrentHashMap<>();
+
+  /* the SHA-256 of each spec's content, the generated schemas are cached by it */
+  private final Map<String, String> hashes = new ConcurrentHashMap<>();
+  private final OutputCache cache;
+  private final GeneratorMetrics metrics;
+
+  @Autowired
+  public GeneratorServiceImpl(CacheProperties properties, GeneratorMetrics metrics) {
+    this.cache = new OutputCache(properties.getCapacity(), properties.getMaxBytes(),
+      properties.getLocation().isEmpty() ? null : Paths.get(properties.getLocation()));
+    this.metrics = metrics;
+    metrics.watch(map, cache);
+  }
 
   @Autowired
   public void init() {
-    System.out.println("GeneratorServiceImpl.init");
+    print(null, "GeneratorServiceImpl.init");
   }
 
   public WebGenerator get(final String md5) {
     return map.get(md5);
   }
 
+  /* the generation session of a spec, started on first use */
+  public GenerationSession session(final String md5) throws IOException {
+    final WebGenerator generator = require(md5);
+
+    GenerationSession session = sessions.get(md5);
+    if (session == null) {
+      session = GenerationSession.of(generator, cache, hashes.get(md5));
+      final GenerationSession existing = sessions.putIfAbsent(md5, session);
+      if (existing != null) session = existing;
+    }
+    return session;
+  }
+
+  /* the schema generated from the answers, served from the cache when it was generated before */
+  public OutputCache.Entry generate(final String md5, final Map<String, String> answers) throws IOException {
+    final WebGenerator generator = require(md5);
+
+    final String key = OutputCache.key(hashes.get(md5), answers, null);
+    final OutputCache.Entry cached = cache.get(key);
+    if (cached != null) return cached;
+
+    final Emitter writer = new Emitter();
+    generator.writeSchema(writer, Prompt.create(Prompt.Factory.mapPlayer(answers)));
+    return cache.put(key, writer);
+  }
+
+  /* what each operation of the schema generated from the answers cost, never cached */
+  public Explanation explain(final String md5, final Map<String, String> answers) throws IOException {
+    return require(md5).explain(Prompt.create(Prompt.Factory.mapPlayer(answers)));
+  }
+
+  /* writes the schema into the stream as it is generated, gzipped or not, and caches it on the way when gzipped */
+  public void stream(final String md5, final Map<String, String> answers, final OutputStream out, final boolean gzip) throws IOException {
+    final WebGenerator generator = require(md5);
+
+    final String key = OutputCache.key(hashes.get(md5), answers, null);
+    final OutputCache.Entry cached = cache.get(key);
+    if (cached != null) {
+      if (gzip) out.write(cached.getCompressed());
+      else cached.writeTo(out);
+      return;
+    }
+
+    final Prompt prompt = Prompt.create(Prompt.Factory.mapPlayer(answers));
+    if (!gzip) {
+      // the cache keeps gzipped schemas: not worth deflating one the client never receives
+      final Emitter writer = new Emitter(STREAM_CAPACITY, Channels.newChannel(out));
+      generator.writeSchema(writer, prompt);
+      writer.flush();
+      out.flush();
+      return;
+    }
+
+    // the very bytes sent are cached, copied only as long as the cache would keep them
+    final OutputCache.Copy compressed = cache.copy();
+    final GZIPOutputStream deflater = new GZIPOutputStream(new TeeOutputStream(out, compressed));
+
+    final Emitter writer = new Emitter(STREAM_CAPACITY, Channels.newChannel(deflater));
+    generator.writeSchema(writer, prompt);
+    writer.flush();
+
+    // finished rather than closed, the response's stream is closed by the container
+    deflater.finish();
+    out.flush();
+
+    cache.put(key, compressed);
+  }
+
+  public OutputCache getCache() {
+    return cache;
+  }
+
+  private WebGenerator require(final String md5) {
+    final WebGenerator generator = get(md5);
+    if (generator == null) {
+      throw new IllegalArgumentException("No spec uploaded for " + md5);
+    }
+    return generator;
+  }
+
   @Override
   public List<String> parse(final String fileName, final Path file) throws IOException {
+    final String md5 = DigestUtils.md5Hex(fileName).toUpperCase();
+    final PhaseListener listener = metrics.listener(md5);
+
+    listener.started(PhaseListener.Phase.PARSE);
+    final long start = System.nanoTime();
     final WebGenerator generator = WebGenerator.fromFile(file.toAbsolutePath().toString(),
       Prompt.create(Prompt.Factory.yes())
     );
-    map.put(DigestUtils.md5Hex(fileName).toUpperCase(), generator);
+    listener.completed(PhaseListener.Phase.PARSE, System.nanoTime() - start);
+    generator.setPhaseListener(listener);
+
+    hashes.put(md5, OutputCache.specHash(file));
+    final WebGenerator previous = map.put(md5, generator);
+    sessions.remove(md5);
+    if (previous != null) {
+      previous.evict();
+      metrics.forget(md5);
+    }
+    metrics.watch(md5, generator);
 
+    // indexes what the operations reach, then drops the model: it is not read again
     return generator.listGetPaths();
   }
+
+  @Override
+  public boolean evict(final String md5) {
+    final WebGenerator generator = map.remove(md5);
+    sessions.remove(md5);
+    hashes.remove(md5);
+    if (generator == null) return false;
+
+    generator.evict();
+    metrics.forget(md5);
+    return true;
+  }
 }
@@ -11,9 +11,11 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @SpringBootApplication
-@EnableConfigurationProperties(StorageProperties.class)
+@EnableConfigurationProperties({StorageProperties.class, CacheProperties.class})
 public class GeneratorWebApplication {
 
 	@Configuration
@@ -31,6 +33,21 @@ public class GeneratorWebApplication {
 		}
 	}
 
+	@Configuration
+	public class MetricsConfig implements WebMvcConfigurer {
+		private final GeneratorMetrics metrics;
+
+		public MetricsConfig(GeneratorMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void addInterceptors(InterceptorRegistry registry) {
+			// tags the phases timed with the endpoint they were called from
+			registry.addInterceptor(metrics);
+		}
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(GeneratorWebApplication.class, args);
 	}
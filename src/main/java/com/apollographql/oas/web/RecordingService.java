@@ -0,0 +1,83 @@
+package com.apollographql.oas.web;
+
+import com.apollographql.oas.gen.jfr.Events;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The one Flight Recorder recording that can be started and stopped from the web API: only the
+ * generator's events (see {@link Events}) above a threshold. None of the JVM's are recorded, as
+ * some carry the server's environment variables and system properties. At most {@link #MAX_AGE}
+ * of events is kept, so a forgotten recording does not fill the disk.
+ */
+@Service
+@ConditionalOnProperty(prefix = "admin.recording", name = "enabled")
+public class RecordingService {
+  public static final Duration MAX_AGE = Duration.ofMinutes(30);
+
+  private Recording recording;
+
+  public synchronized Map<String, Object> start(final Duration threshold, final Duration duration) {
+    if (recording != null) {
+      throw new IllegalStateException("A recording is already started, since " + recording.getStartTime());
+    }
+
+    // no settings, i.e. every event disabled but the generator's
+    final Recording started = new Recording();
+    for (final Class<? extends Event> event : Events.ALL) {
+      started.enable(event).withThreshold(threshold);
+    }
+
+    started.setName("oas-generator");
+    started.setToDisk(true);
+    started.setMaxAge(MAX_AGE);
+    // stops by itself, its events are still returned by #stop
+    if (duration != null) started.setDuration(duration);
+
+    started.start();
+    this.recording = started;
+
+    return status();
+  }
+
+  /* stops the recording, and dumps it to a file the caller deletes */
+  public synchronized Path stop() throws IOException {
+    if (recording == null) {
+      throw new IllegalStateException("No recording started");
+    }
+
+    try {
+      if (recording.getState() == RecordingState.RUNNING) recording.stop();
+
+      final Path file = Files.createTempFile("oas-generator-", ".jfr");
+      recording.dump(file);
+      return file;
+    }
+    finally {
+      recording.close();
+      this.recording = null;
+    }
+  }
+
+  public synchronized Map<String, Object> status() {
+    final Map<String, Object> status = new LinkedHashMap<>();
+    status.put("state", recording != null ? recording.getState().name() : RecordingState.CLOSED.name());
+    if (recording != null) {
+      final Instant start = recording.getStartTime();
+      status.put("started", String.valueOf(start));
+      status.put("size", recording.getSize());
+    }
+    return status;
+  }
+}
@@ -1,24 +1,56 @@
 package com.apollographql.oas.gen;
 
+import com.apollographql.oas.gen.cache.OutputCache;
+import com.apollographql.oas.gen.context.ComponentCache;
+import com.apollographql.oas.gen.context.Explanation;
+import com.apollographql.oas.gen.context.SelectionTable;
+import com.apollographql.oas.gen.emit.Emitter;
+import com.apollographql.oas.gen.jfr.Events;
+import com.apollographql.oas.gen.log.AsyncHandler;
 import com.apollographql.oas.gen.nodes.*;
 import com.apollographql.oas.gen.nodes.params.Param;
 import com.apollographql.oas.gen.nodes.props.Prop;
 import com.apollographql.oas.gen.nodes.props.PropArray;
 import com.apollographql.oas.gen.nodes.props.PropScalar;
+import com.apollographql.oas.gen.prompt.Input;
 import com.apollographql.oas.gen.prompt.Prompt;
 import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.Schema;
 import io.swagger.v3.parser.OpenAPIV3Parser;
 import io.swagger.v3.parser.core.models.ParseOptions;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Handler;
+import java.util.logging.Level;
 import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -359,6 +391,612 @@ public class ConnectorGenTests {
     printSchema(generator);
   }
 
+  @Test
+  void test_005_testMostPopularProductScalarsOnlyMode() throws IOException {
+    final OpenAPI parser = createParser(loadSpec("most-popular-product.yaml"));
+    assertNotNull(parser);
+
+    final ConnectorGen generator = new ConnectorGen(parser, Prompt.create(Prompt.Factory.yes()));
+    generator.setScalarsOnly(true);
+    generator.visit();
+
+    final Set<Type> collected = generator.getCollected();
+    assertEquals(4, collected.size(), "Should have collected 4 paths");
+
+    final StringWriter writer = new StringWriter();
+    generator.writeSchema(writer);
+
+    final String schema = writer.toString();
+    assertTrue(schema.contains("numResults: Int"));
+    assertFalse(schema.contains("results:"), "Arrays should not be followed");
+    assertFalse(schema.contains("{\n    "), "Selections should not be nested");
+  }
+
+  @Test
+  void test_006_testMostPopularProductSessionDelta() throws IOException {
+    final WebGenerator generator = WebGenerator.fromFile(loadSpec("most-popular-product.yaml"),
+      Prompt.create(Prompt.Factory.yes()));
+
+    // answer yes to everything, and keep the answers
+    final Map<String, String> answers = new HashMap<>();
+    final Prompt prompt = Prompt.create(new Input() {
+      @Override
+      public boolean yesNo(final String id, final String prompt) {
+        answers.put(id, "y");
+        return true;
+      }
+
+      @Override
+      public char yesNoSelect(final String id, final String prompt) {
+        answers.put(id, "y");
+        return 'y';
+      }
+    });
+
+    final StringWriter writer = new StringWriter();
+    generator.writeSchema(writer, prompt);
+
+    final LongAdder visits = new LongAdder();
+    generator.setPhaseListener((phase, nanos) -> {
+      if (phase == PhaseListener.Phase.VISIT) visits.increment();
+    });
+
+    final OutputCache cache = new OutputCache();
+    final GenerationSession session = GenerationSession.of(generator, cache, "most-popular-product");
+    assertEquals(writer.toString(), session.generate(answers).getSchema());
+
+    final GenerationSession.Result result = session.apply(Map.of("get:/viewed/{period}.json", "n"));
+    assertTrue(result.getChanged().contains("get:/viewed/{period}.json"));
+    assertTrue(result.getChanged().contains("type:viewedByPeriodJsonResponse"));
+    assertFalse(result.getChanged().contains("get:/emailed/{period}.json"), "Other operations are not changed");
+    assertFalse(result.getSchema().contains("viewedByPeriodJsonResponse"));
+    assertEquals(2, visits.sum());
+
+    // answered back: served from the cache, and diffed against the previous schema all the same
+    final GenerationSession.Result reverted = session.apply(Map.of("get:/viewed/{period}.json", "y"));
+    assertEquals(writer.toString(), reverted.getSchema());
+    assertEquals(Set.copyOf(result.getChanged()), Set.copyOf(reverted.getChanged()));
+    assertEquals(2, visits.sum(), "Nothing is visited again");
+    assertEquals(1, cache.getHits());
+
+    // a delta answering nothing asked is not generated, nor looked up
+    assertEquals(List.of(), session.apply(Map.of("get:/unknown", "n")).getChanged());
+    assertEquals(2, visits.sum());
+  }
+
+  @Test
+  void test_015_testSessionMatchesWriteSchema() throws IOException {
+    for (final String spec : List.of("most-popular-product.yaml", "TMF637-ProductInventory-v5.0.0.oas.yaml",
+      "TMF666-Account_Management-v5.0.0.oas.yaml")) {
+
+      final WebGenerator generator = WebGenerator.fromFile(loadSpec(spec), Prompt.create(Prompt.Factory.yes()));
+      final GenerationSession session = GenerationSession.of(generator);
+
+      for (int seed = 0; seed < 4; seed++) {
+        final Random random = new Random(seed);
+
+        // some answers at random, the same ones generate the schema and the session
+        final StringWriter expected = new StringWriter();
+        final Map<String, String> answers = answerAtRandom(generator, Map.of(), random, expected);
+        assertEquals(expected.toString(), session.generate(answers).getSchema(), spec + ", seed " + seed);
+
+        // then a few of them changed, and any prompt they now ask answered
+        final Map<String, String> changed = new HashMap<>(answers);
+        for (final String id : answers.keySet()) {
+          if (random.nextInt(8) == 0) changed.remove(id);
+        }
+
+        final StringWriter patched = new StringWriter();
+        final Map<String, String> after = answerAtRandom(generator, changed, random, patched);
+
+        final Map<String, String> delta = new HashMap<>();
+        after.forEach((id, answer) -> {
+          if (!answer.equals(answers.get(id))) delta.put(id, answer);
+        });
+        answers.keySet().stream().filter(id -> !after.containsKey(id)).forEach(id -> delta.put(id, null));
+
+        final GenerationSession.Result result = session.apply(delta);
+        assertEquals(patched.toString(), result.getSchema(), spec + ", seed " + seed + " after " + delta.size() + " changes");
+        if (!expected.toString().equals(patched.toString())) assertFalse(result.getChanged().isEmpty());
+      }
+    }
+  }
+
+  @Test
+  void test_016_testParallelEmissionMatchesSequential() throws IOException {
+    for (final String spec : List.of("TMF637-ProductInventory-v5.0.0.oas.yaml", "TMF666-Account_Management-v5.0.0.oas.yaml")) {
+      final OpenAPI parser = createParser(loadSpec(spec));
+
+      final ConnectorGen sequential = new ConnectorGen(parser, Prompt.create(Prompt.Factory.yes()));
+      sequential.setParallelThreshold(Integer.MAX_VALUE);
+      sequential.visit();
+      final StringWriter expected = new StringWriter();
+      sequential.writeSchema(expected);
+
+      // a few times over, every block (type and operation) generated concurrently into the shared tables
+      for (int i = 0; i < 3; i++) {
+        final ConnectorGen parallel = new ConnectorGen(parser, Prompt.create(Prompt.Factory.yes()));
+        parallel.setParallelThreshold(1);
+        parallel.visit();
+
+        final StringWriter written = new StringWriter();
+        parallel.writeSchema(written);
+        assertEquals(expected.toString(), written.toString(), spec + ", into a writer");
+
+        // spilled into the channel after each block, as they are joined
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        parallel.writeSchema(Channels.newChannel(bytes));
+        assertEquals(expected.toString(), bytes.toString(StandardCharsets.UTF_8), spec + ", into a channel");
+      }
+    }
+  }
+
+  @Test
+  void test_017_testRecursiveSpecs() {
+    // each depth expands the recursive component once more within itself, a cut field is typed but not selected
+    final Map<String, List<String>> expected = Map.of(
+      "recursive-self.yaml", List.of(
+        "id name",
+        "children { id name } id name parent { id name }"),
+      "recursive-mutual.yaml", List.of(
+        "department { id name } id name",
+        "department { employees { department { id name } id name } id manager { department { id name } id name } name } id name"));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+      for (final Map.Entry<String, List<String>> entry : expected.entrySet()) {
+        final OpenAPI parser = createParser(loadSpec(entry.getKey()));
+
+        for (int depth = 1; depth <= entry.getValue().size(); depth++) {
+          final String schema = writeRecursive(parser, depth);
+          assertEquals(schema, writeRecursive(parser, depth), entry.getKey() + " is generated the same every time");
+
+          assertEquals(entry.getValue().get(depth - 1), selectionOf(schema), entry.getKey() + ", depth " + depth);
+          assertFalse(Pattern.compile(": *$", Pattern.MULTILINE).matcher(schema).find(), "Every field is typed");
+        }
+      }
+    });
+
+    final String schema = assertTimeoutPreemptively(Duration.ofSeconds(30),
+      () -> writeRecursive(createParser(loadSpec("recursive-self.yaml")), 1));
+    assertTrue(schema.contains("parent: Category"));
+    assertTrue(schema.contains("children: [Category]"));
+  }
+
+  @Test
+  void test_007_testMostPopularProductSharedSelections() throws IOException {
+    final SelectionTable selections = new SelectionTable();
+    final ConnectorGen generator = new ConnectorGen(createParser(loadSpec("most-popular-product.yaml")),
+      Prompt.create(Prompt.Factory.yes()));
+    generator.setSelections(selections);
+    generator.visit();
+
+    // a table without capacity never shares a selection
+    final ConnectorGen unshared = new ConnectorGen(createParser(loadSpec("most-popular-product.yaml")),
+      Prompt.create(Prompt.Factory.yes()));
+    unshared.setSelections(new SelectionTable(0));
+    unshared.visit();
+
+    final StringWriter expected = new StringWriter();
+    unshared.writeSchema(expected);
+
+    generator.writeSchema(getWriter());
+    assertEquals(expected.toString(), getWriter().toString());
+    assertTrue(selections.getHits() > 0, "Operations returning the same type share its selection");
+  }
+
+  @Test
+  void test_008_testMostPopularProductCachedOutput(@TempDir Path directory) throws IOException {
+    final String spec = loadSpec("most-popular-product.yaml");
+    final String hash = OutputCache.specHash(Path.of(spec));
+
+    // the order answers are given in doesn't matter, their values do
+    final Map<String, String> answers = new LinkedHashMap<>(Map.of("get:/viewed/{period}.json", "y"));
+    answers.put("get:/emailed/{period}.json", "n");
+    final String key = OutputCache.key(hash, answers, null);
+    assertEquals(key, OutputCache.key(hash, new TreeMap<>(answers), null));
+    assertNotEquals(key, OutputCache.key(hash, Map.of("get:/viewed/{period}.json", "y"), null));
+
+    final ConnectorGen generator = new ConnectorGen(createParser(spec), Prompt.create(Prompt.Factory.yes()));
+    generator.visit();
+
+    final Emitter schema = new Emitter();
+    generator.writeSchema(schema);
+
+    final OutputCache cache = new OutputCache(1, OutputCache.DEFAULT_MAX_BYTES, directory);
+    assertNull(cache.get(key));
+    cache.put(key, schema);
+    assertEquals(schema.toString(), cache.get(key).getSchema());
+
+    // evicted from memory, read back from disk
+    cache.put(OutputCache.key(hash, Map.of(), null), new Emitter().append("type Query {}\n"));
+    assertEquals(schema.toString(), cache.get(key).getSchema());
+    assertEquals(1, cache.getDiskHits());
+  }
+
+  @Test
+  void test_009_testTMF637_Streamed() throws IOException {
+    final ConnectorGen generator = new ConnectorGen(createParser(loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml")),
+      Prompt.create(Prompt.Factory.yes()));
+    generator.visit();
+    generator.writeSchema(getWriter());
+
+    // spilled into the channel chunk by chunk, as it is generated
+    final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    generator.writeSchema(Channels.newChannel(streamed));
+
+    assertTrue(getWriter().toString().length() > 8 * 1024, "Should be larger than a chunk");
+    assertEquals(getWriter().toString(), streamed.toString(StandardCharsets.UTF_8));
+
+    // copied for the cache as it is streamed gzipped, unless larger than the cache keeps
+    final OutputCache cache = new OutputCache(2, 64 * 1024, null);
+    final OutputCache.Copy copy = cache.copy();
+    try (GZIPOutputStream deflater = new GZIPOutputStream(copy)) {
+      generator.writeSchema(Channels.newChannel(deflater));
+    }
+    assertFalse(copy.isAbandoned());
+    assertEquals(getWriter().toString(), cache.put("tmf637", copy).getSchema());
+
+    final OutputCache small = new OutputCache(2, 1024, null);
+    final OutputCache.Copy abandoned = small.copy();
+    try (GZIPOutputStream deflater = new GZIPOutputStream(abandoned)) {
+      generator.writeSchema(Channels.newChannel(deflater));
+    }
+    assertTrue(abandoned.isAbandoned());
+    assertNull(small.put("tmf637", abandoned));
+    assertNull(small.get("tmf637"));
+  }
+
+  @Test
+  void test_010_testAsyncLogging() throws InterruptedException {
+    final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch release = new CountDownLatch(1);
+    final Handler target = new Handler() {
+      @Override
+      public void publish(final LogRecord record) {
+        try {
+          release.await();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        written.add(record.getMessage());
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    // the target is stuck: one record is taken, 4 wait, the rest are dropped
+    final AsyncHandler handler = new AsyncHandler(target, 4, AsyncHandler.Policy.DROP, 2);
+    for (int i = 0; i < 10; i++) {
+      handler.publish(new LogRecord(Level.INFO, "record " + i));
+      if (i == 0) while (handler.getPending() > 0) Thread.sleep(1);
+    }
+    assertEquals(5, handler.getDropped());
+
+    release.countDown();
+    handler.flush();
+    assertEquals(List.of("record 0", "record 1", "record 2", "record 3", "record 4"), written);
+
+    handler.close();
+    handler.publish(new LogRecord(Level.INFO, "closed"));
+    assertEquals(5, written.size());
+  }
+
+  @Test
+  void test_018_testAsyncLoggingTargetDies() {
+    final Handler target = new Handler() {
+      @Override
+      public void publish(final LogRecord record) {
+        throw new Error("target failed on " + record.getMessage());
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+
+    // the worker dies on the first record: waiting for room, or for a flush, never hangs
+    final AsyncHandler handler = new AsyncHandler(target, 2, AsyncHandler.Policy.BLOCK, 1);
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      for (int i = 0; i < 10; i++) {
+        handler.publish(new LogRecord(Level.INFO, "record " + i));
+      }
+      handler.flush();
+
+      handler.close();
+      handler.flush();
+    });
+    assertTrue(handler.getDropped() > 0);
+  }
+
+  @Test
+  void test_019_testTMF637_FrozenOperations() throws Exception {
+    final String spec = loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml");
+    final WebGenerator generator = WebGenerator.fromFile(spec, Prompt.create(Prompt.Factory.yes()));
+
+    final GetOp operation = generator.getPathResult("get:/product");
+    assertTrue(operation.isFrozen());
+    assertThrows(IllegalStateException.class, () -> operation.add(operation.getChildren().get(0)));
+    assertThrows(IllegalStateException.class, () -> operation.putProp("added", null));
+
+    // props left for later are visited, then frozen, when found: and searched below once frozen
+    final Type mutable = findMutable(operation, Kind.PROP_REF);
+    assertNotNull(mutable);
+    assertSame(mutable, generator.find(mutable.path()));
+    assertTrue(mutable.isFrozen());
+
+    final Type below = mutable.getChildren().get(0);
+    assertSame(below, generator.find(below.path()));
+
+    // the mutable nodes of every operation, as a fresh generator sees them
+    final WebGenerator reference = WebGenerator.fromFile(spec, Prompt.create(Prompt.Factory.yes()));
+    final List<String> paths = new ArrayList<>();
+    for (final String path : reference.listGetPaths()) {
+      paths.add("get:" + path);
+      final Type found = findMutable(reference.getPathResult("get:" + path), Kind.PROP_REF);
+      if (found != null) paths.add(found.path());
+    }
+
+    // all expanded and found at once on another generator, each by several threads
+    final WebGenerator shared = WebGenerator.fromFile(spec, Prompt.create(Prompt.Factory.yes()));
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Future<Type>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        for (final String path : paths) {
+          results.add(executor.submit(() -> {
+            start.await();
+            return path.indexOf('>') < 0 ? shared.getPathResult(path) : shared.find(path);
+          }));
+        }
+      }
+      start.countDown();
+
+      for (int i = 0; i < results.size(); i++) {
+        final Type found = results.get(i).get(30, TimeUnit.SECONDS);
+        final Type first = results.get(i % paths.size()).get();
+
+        assertNotNull(found, paths.get(i % paths.size()));
+        assertTrue(found.isFrozen());
+        assertSame(first, found, "Every thread finds the same node");
+      }
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void test_020_testTMF637_ReclaimedOperationRebuilt() throws IOException {
+    final WebGenerator generator = WebGenerator.fromFile(loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml"),
+      Prompt.create(Prompt.Factory.yes()));
+
+    final GetOp operation = generator.getPathResult("get:/product");
+    final Type found = generator.find(findMutable(operation, Kind.PROP_REF).path());
+    final List<String> before = pathsOf(operation);
+    assertEquals(0, generator.getEvictions());
+
+    generator.reclaim("get:/product");
+    assertTrue(generator.getCollected().isEmpty());
+    assertEquals(1, generator.getEvictions());
+
+    // found again in a rebuilt operation: another graph, but the same subtree
+    final Type rebuilt = generator.find(found.path());
+    assertNotNull(rebuilt);
+    assertNotSame(found, rebuilt);
+    assertEquals(found.path(), rebuilt.path());
+    assertEquals(pathsOf(found), pathsOf(rebuilt));
+    assertEquals(1, generator.getRebuilds());
+
+    final GetOp again = generator.getPathResult("get:/product");
+    assertNotSame(operation, again);
+    assertEquals(before, pathsOf(again));
+    assertEquals(1, generator.getRebuilds(), "Rebuilt once, then held again");
+  }
+
+  @Test
+  void test_022_testTMF637_SharedComponents(@TempDir Path directory) throws IOException {
+    final String spec = loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml");
+    final Path copy = directory.resolve("ProductInventoryCopy.yaml");
+    Files.writeString(copy, Files.readString(Path.of(spec)).replace("title: ProductInventory", "title: ProductInventoryCopy"));
+
+    final ComponentCache cache = ComponentCache.create();
+
+    // nothing is shared while the model is held, the spec's own copies are still there
+    final WebGenerator attached = new WebGenerator(createParser(spec), Prompt.create(Prompt.Factory.yes()));
+    attached.setComponentCache(cache);
+    attached.listGetPaths();
+    assertTrue(attached.isAttached());
+    assertEquals(0, cache.size());
+
+    final WebGenerator first = WebGenerator.fromFile(spec, Prompt.create(Prompt.Factory.yes()));
+    final WebGenerator second = WebGenerator.fromFile(copy.toString(), Prompt.create(Prompt.Factory.yes()));
+    first.setComponentCache(cache);
+    second.setComponentCache(cache);
+    first.listGetPaths();
+    second.listGetPaths();
+
+    // both specs resolve the same definition to the same instance, kept once
+    final Schema<?> product = first.getContext().lookupRef("#/components/schemas/Product");
+    assertNotNull(product);
+    assertSame(product, second.getContext().lookupRef("#/components/schemas/Product"));
+    assertTrue(cache.size() > 0);
+    assertEquals(cache.getLookups(), cache.size() + cache.getHits());
+    assertEquals(2, cache.getRefs(ComponentCache.keyOf(product)));
+
+    // still generated as from the model
+    final ConnectorGen reference = new ConnectorGen(createParser(spec), Prompt.create(Prompt.Factory.yes()));
+    reference.visit();
+    final StringWriter expected = new StringWriter();
+    reference.writeSchema(expected);
+    final StringWriter written = new StringWriter();
+    second.writeSchema(written, Prompt.create(Prompt.Factory.yes()));
+    assertEquals(expected.toString(), written.toString());
+
+    first.evict();
+    assertEquals(1, cache.getRefs(ComponentCache.keyOf(product)));
+    second.evict();
+    assertEquals(0, cache.size(), "The last spec using a definition frees it");
+  }
+
+  @Test
+  void test_021_testTMF637_DetachedOnceIndexed() throws IOException {
+    final String spec = loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml");
+    final Set<PhaseListener.Phase> phases = EnumSet.noneOf(PhaseListener.Phase.class);
+    final WebGenerator generator = WebGenerator.fromFile(spec, Prompt.create(Prompt.Factory.yes()));
+    generator.setPhaseListener((phase, nanos) -> phases.add(phase));
+
+    assertTrue(generator.isAttached());
+    final List<String> paths = generator.listGetPaths();
+    assertFalse(generator.isAttached(), "The model is dropped once the operations are indexed");
+
+    // answer yes to everything, and keep the answers for the session
+    final Map<String, String> answers = new HashMap<>();
+    final StringWriter written = new StringWriter();
+    generator.writeSchema(written, Prompt.create(new Input() {
+      @Override
+      public boolean yesNo(final String id, final String prompt) {
+        answers.put(id, "y");
+        return true;
+      }
+
+      @Override
+      public char yesNoSelect(final String id, final String prompt) {
+        answers.put(id, "y");
+        return 'y';
+      }
+    }));
+    assertFalse(generator.isAttached(), "Generating does not bring the model back");
+
+    // the same schema as generated from the model
+    final ConnectorGen reference = new ConnectorGen(createParser(spec), Prompt.create(Prompt.Factory.yes()));
+    reference.visit();
+    final StringWriter expected = new StringWriter();
+    reference.writeSchema(expected);
+    assertEquals(expected.toString(), written.toString());
+
+    final GetOp operation = generator.getPathResult("get:/product");
+    assertTrue(paths.contains("/product"));
+    assertNotNull(generator.find(findMutable(operation, Kind.PROP_REF).path()));
+    assertEquals(written.toString(), GenerationSession.of(generator).generate(answers).getSchema());
+
+    assertFalse(generator.isAttached());
+    assertFalse(phases.contains(PhaseListener.Phase.PARSE), "The spec is never read again");
+  }
+
+  @Test
+  void test_011_testTMF637_PhasesTimed() throws IOException {
+    final Map<PhaseListener.Phase, Long> timed = new EnumMap<>(PhaseListener.Phase.class);
+    final ConnectorGen generator = new ConnectorGen(createParser(loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml")),
+      Prompt.create(Prompt.Factory.yes()));
+    generator.setPhaseListener((phase, nanos) -> timed.merge(phase, nanos, Long::sum));
+
+    generator.visit();
+    generator.writeSchema(getWriter());
+
+    assertEquals(Set.of(PhaseListener.Phase.VISIT, PhaseListener.Phase.REF_COUNT, PhaseListener.Phase.WRITE), timed.keySet());
+    assertTrue(timed.get(PhaseListener.Phase.WRITE) >= timed.get(PhaseListener.Phase.REF_COUNT));
+  }
+
+  @Test
+  void test_012_testTMF637_Recorded(@TempDir Path directory) throws IOException {
+    final Path file = directory.resolve("generate.jfr");
+    try (Recording recording = new Recording()) {
+      for (final Class<? extends Event> event : Events.ALL) {
+        recording.enable(event).withThreshold(Duration.ZERO);
+      }
+      recording.start();
+
+      final ConnectorGen generator = new ConnectorGen(createParser(loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml")),
+        Prompt.create(Prompt.Factory.yes()));
+      generator.visit();
+      generator.writeSchema(getWriter());
+
+      recording.stop();
+      recording.dump(file);
+    }
+
+    final Map<String, Integer> recorded = new HashMap<>();
+    for (final RecordedEvent event : RecordingFile.readAllEvents(file)) {
+      recorded.merge(event.getEventType().getName().substring(Events.PREFIX.length()), 1, Integer::sum);
+      if (event.hasField("depth")) assertTrue(event.getInt("depth") >= 0);
+    }
+
+    assertEquals(Set.of("Visit", "Generate", "Select", "LookupRef", "RefCount"), recorded.keySet());
+  }
+
+  @Test
+  void test_013_testMostPopularProductProfiled() throws IOException {
+    final Profiler profiler = new Profiler();
+    final ConnectorGen generator = new ConnectorGen(createParser(loadSpec("most-popular-product.yaml")),
+      Prompt.create(Prompt.Factory.yes()));
+    generator.setPhaseListener(profiler);
+
+    generator.visit();
+    generator.detach();
+    generator.writeSchema(getWriter());
+    profiler.collect(generator);
+
+    assertEquals(Set.of(PhaseListener.Phase.VISIT, PhaseListener.Phase.REF_COUNT, PhaseListener.Phase.WRITE),
+      profiler.getPhases().keySet());
+    // once detaching, once writing
+    assertEquals(2, profiler.getPhases().get(PhaseListener.Phase.REF_COUNT).getCalls());
+    assertTrue(profiler.getPhases().get(PhaseListener.Phase.VISIT).getAllocatedBytes() > 0);
+
+    assertEquals(generator.getContext().getNodes().size(), profiler.getCounts().get("nodes"));
+    assertEquals(generator.getPrompt().getCalls(), profiler.getCounts().get("prompts"));
+    assertTrue((Long) profiler.getCounts().get("lookupRef") > 0);
+    assertEquals(generator.getContext().getStrings().getBytesSaved(),
+      ((Map<?, ?>) profiler.getCounts().get("strings")).get("bytesSaved"));
+  }
+
+  @Test
+  void test_014_testTMF637_Explained() throws IOException {
+    final OpenAPI parser = createParser(loadSpec("TMF637-ProductInventory-v5.0.0.oas.yaml"));
+
+    final ConnectorGen plain = new ConnectorGen(parser, Prompt.create(Prompt.Factory.yes()));
+    plain.visit();
+    final StringWriter expected = new StringWriter();
+    plain.writeSchema(expected);
+
+    final ConnectorGen generator = new ConnectorGen(parser, Prompt.create(Prompt.Factory.yes()));
+    generator.setExplain(true);
+    generator.visit();
+    final StringWriter written = new StringWriter();
+    generator.writeSchema(written);
+
+    // explaining does not change what is generated
+    assertEquals(expected.toString(), written.toString());
+
+    final Explanation explanation = generator.getExplanation();
+    final List<Explanation.Operation> operations = explanation.getOperations();
+    assertEquals(generator.getCollected().size(), operations.size());
+
+    long output = explanation.getUnattributed().getOutput();
+    for (int i = 0; i < operations.size(); i++) {
+      final Explanation.Operation operation = operations.get(i);
+      assertTrue(operation.getNodes() > 0, operation.getPath() + " should have visited nodes");
+      assertTrue(operation.getMaxDepth() > 0);
+      assertTrue(operation.getOutput() > 0);
+      if (i > 0) assertTrue(operations.get(i - 1).getNanos() >= operation.getNanos());
+      output += operation.getOutput();
+    }
+
+    // every block is charged once, only the schema's header is not
+    assertTrue(output > 0 && output <= written.toString().length());
+  }
+
   @Test
   void test_002_testMostPopularProduct() throws IOException {
     final OpenAPI parser = createParser(loadSpec("most-popular-product.yaml"));
@@ -376,6 +1014,67 @@ public class ConnectorGenTests {
     printSchema(generator);
   }
 
+  /* writes the schema answering from the given answers, or else at random (once per prompt), and returns every answer */
+  private static Map<String, String> answerAtRandom(final WebGenerator generator, final Map<String, String> given,
+                                                    final Random random, final Writer writer) throws IOException {
+    final Map<String, String> answers = new HashMap<>();
+    generator.writeSchema(writer, Prompt.create(new Input() {
+      @Override
+      public boolean yesNo(final String id, final String prompt) {
+        final String answer = answers.computeIfAbsent(id, key -> given.getOrDefault(key, random.nextInt(4) == 0 ? "n" : "y"));
+        return answer.equals("y");
+      }
+
+      @Override
+      public char yesNoSelect(final String id, final String prompt) {
+        final String answer = answers.computeIfAbsent(id, key -> given.getOrDefault(key, String.valueOf("yyns".charAt(random.nextInt(4)))));
+        return answer.charAt(0);
+      }
+    }));
+    return answers;
+  }
+
+  private static String writeRecursive(final OpenAPI parser, final int depth) throws IOException {
+    final ConnectorGen generator = new ConnectorGen(parser, Prompt.create(Prompt.Factory.yes()));
+    generator.setRecursionDepth(depth);
+    generator.visit();
+
+    final StringWriter writer = new StringWriter();
+    generator.writeSchema(writer);
+    return writer.toString();
+  }
+
+  /* the selection of the (only) connector, on one line */
+  private static String selectionOf(final String schema) {
+    final int start = schema.indexOf("selection: \"\"\"") + "selection: \"\"\"".length();
+    final int end = schema.indexOf("\"\"\"", start);
+    return schema.substring(start, end).trim().replaceAll("\\s+", " ");
+  }
+
+  /* the paths of the node and every node below it, as far as it was visited */
+  private static List<String> pathsOf(final Type type) {
+    final List<String> paths = new ArrayList<>();
+    paths.add(type.path());
+    for (final Type child : type.getChildren()) paths.addAll(pathsOf(child));
+    for (final Type prop : type.getProps().values()) paths.addAll(pathsOf(prop));
+    return paths;
+  }
+
+  /* the first node of the kind left mutable under a frozen one, i.e. not visited yet */
+  private static Type findMutable(final Type type, final Kind kind) {
+    if (!type.isFrozen()) return type.kind() == kind && type.getParent().isFrozen() ? type : null;
+
+    for (final Type child : type.getChildren()) {
+      final Type found = findMutable(child, kind);
+      if (found != null) return found;
+    }
+    for (final Type prop : type.getProps().values()) {
+      final Type found = findMutable(prop, kind);
+      if (found != null) return found;
+    }
+    return null;
+  }
+
   private static OpenAPI createParser(String source) {
     final ParseOptions options = new ParseOptions();
     options.setResolve(true); // implicit
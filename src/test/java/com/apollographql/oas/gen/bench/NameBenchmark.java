@@ -0,0 +1,163 @@
+package com.apollographql.oas.gen.bench;
+
+import com.apollographql.oas.converter.utils.NameMangler;
+import com.apollographql.oas.gen.context.NameTable;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.parser.OpenAPIV3Parser;
+import io.swagger.v3.parser.core.models.ParseOptions;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the precompiled name mangling of {@link NameMangler}, and the memo of {@link NameTable}
+ * on top of it, against the regex-per-call mangling they replaced, over every property name and
+ * path of a spec. Run with:
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.apollographql.oas.gen.bench.NameBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameBenchmark {
+  @Param({"TMF666-Account_Management-v5.0.0.oas.yaml", "TMF637-ProductInventory-v5.0.0.oas.yaml"})
+  public String spec;
+
+  private String[] fields;
+  private String[] paths;
+  private NameTable names;
+
+  @Setup
+  public void setUp() {
+    final ParseOptions options = new ParseOptions();
+    options.setResolve(true);
+    options.setResolveCombinators(false);
+
+    final String source = NameBenchmark.class.getClassLoader().getResource(spec).getPath();
+    final OpenAPI parser = new OpenAPIV3Parser().read(source, null, options);
+
+    final List<String> fields = new ArrayList<>();
+    for (final Schema<?> schema : parser.getComponents().getSchemas().values()) {
+      collect(schema, fields);
+    }
+
+    this.fields = fields.toArray(new String[0]);
+    this.paths = parser.getPaths().keySet().toArray(new String[0]);
+    this.names = new NameTable();
+
+    // the rewrite must not change a single name
+    for (final String field : this.fields) {
+      check(Legacy.sanitiseField(field), NameMangler.sanitiseField(field));
+      check(Legacy.sanitiseFieldForSelect(field), NameMangler.sanitiseFieldForSelect(field));
+    }
+    for (final String path : this.paths) {
+      check(Legacy.capitaliseParts(path, "/"), NameMangler.capitaliseParts(path, NameMangler.PATH_SEPARATORS));
+      check(Legacy.capitaliseParts(path, "[-.]"), NameMangler.capitaliseParts(path, NameMangler.OPERATION_SEPARATORS));
+      check(Legacy.genConnectorPath(path), NameMangler.genConnectorPath(path));
+    }
+  }
+
+  @Benchmark
+  public void legacy(final Blackhole blackhole) {
+    for (final String field : fields) {
+      blackhole.consume(Legacy.sanitiseField(field));
+      blackhole.consume(Legacy.sanitiseFieldForSelect(field));
+    }
+    for (final String path : paths) {
+      blackhole.consume(Legacy.genConnectorPath(path));
+    }
+  }
+
+  @Benchmark
+  public void precompiled(final Blackhole blackhole) {
+    for (final String field : fields) {
+      blackhole.consume(NameMangler.sanitiseField(field));
+      blackhole.consume(NameMangler.sanitiseFieldForSelect(field));
+    }
+    for (final String path : paths) {
+      blackhole.consume(NameMangler.genConnectorPath(path));
+    }
+  }
+
+  @Benchmark
+  public void memoized(final Blackhole blackhole) {
+    for (final String field : fields) {
+      blackhole.consume(names.sanitiseField(field));
+      blackhole.consume(names.sanitiseFieldForSelect(field));
+    }
+    for (final String path : paths) {
+      blackhole.consume(names.genConnectorPath(path));
+    }
+  }
+
+  private static void collect(final Schema<?> schema, final List<String> fields) {
+    if (schema == null) return;
+
+    if (schema.getProperties() != null) {
+      fields.addAll(schema.getProperties().keySet());
+    }
+    if (schema.getAllOf() != null) {
+      for (final Schema<?> allOf : schema.getAllOf()) {
+        collect(allOf, fields);
+      }
+    }
+  }
+
+  private static void check(final String expected, final String actual) {
+    if (!expected.equals(actual)) {
+      throw new IllegalStateException("Expected '" + expected + "' but was '" + actual + "'");
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+      .include(NameBenchmark.class.getSimpleName())
+      .build()).run();
+  }
+
+  /* the mangling as it was, compiling its patterns on every call */
+  private static class Legacy {
+    static String capitaliseParts(final String cleanedPath, final String splitChar) {
+      final StringBuilder formattedPath = new StringBuilder();
+      for (final String part : cleanedPath.split(splitChar)) {
+        if (!part.isEmpty()) {
+          formattedPath.append(part.substring(0, 1).toUpperCase()).append(part.substring(1));
+        }
+      }
+      return formattedPath.toString();
+    }
+
+    static String genParamName(final String param) {
+      return StringUtils.uncapitalize(capitaliseParts(param, "[-_\\.]"));
+    }
+
+    static String sanitiseField(final String name) {
+      return genParamName(name.startsWith("@") ? name.substring(1) : name);
+    }
+
+    static String sanitiseFieldForSelect(final String name) {
+      final String fieldName = name.startsWith("@") ? name.substring(1) : name;
+      final String sanitised = genParamName(fieldName);
+      if (sanitised.equals(fieldName)) return sanitised;
+
+      final boolean needsQuotes = fieldName.matches(".*[_\\-\\.].*");
+      return sanitised + ": " + (needsQuotes ? "\"" + fieldName + "\"" : fieldName);
+    }
+
+    static String genConnectorPath(final String path) {
+      return path.replaceAll("\\{([a-zA-Z0-9]+)\\}", "{\\$args.$1}");
+    }
+  }
+}